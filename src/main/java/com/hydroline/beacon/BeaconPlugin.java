@@ -5,6 +5,7 @@ import com.hydroline.beacon.config.PluginConfig;
 import com.hydroline.beacon.listener.PlayerSessionListener;
 import com.hydroline.beacon.socket.SocketServerManager;
 import com.hydroline.beacon.storage.DatabaseManager;
+import com.hydroline.beacon.task.ScanEngine;
 import com.hydroline.beacon.task.ScanScheduler;
 import com.hydroline.beacon.world.WorldFileAccess;
 import org.bukkit.Bukkit;
@@ -17,6 +18,7 @@ public class BeaconPlugin extends JavaPlugin {
     private ConfigManager configManager;
     private DatabaseManager databaseManager;
     private ScanScheduler scanScheduler;
+    private ScanEngine scanEngine;
     private WorldFileAccess worldFileAccess;
     private SocketServerManager socketServerManager;
 
@@ -30,7 +32,7 @@ public class BeaconPlugin extends JavaPlugin {
                 + ", interval_time_ticks=" + cfg.getIntervalTimeTicks()
                 + ", version=" + cfg.getVersion());
 
-        this.databaseManager = new DatabaseManager(this);
+        this.databaseManager = new DatabaseManager(this, cfg);
         this.worldFileAccess = new WorldFileAccess(Bukkit.getWorlds());
         Bukkit.getPluginManager().registerEvents(new PlayerSessionListener(this), this);
 
@@ -50,6 +52,7 @@ public class BeaconPlugin extends JavaPlugin {
                 }
 
                 // 初始化完成后启动定时异步扫描任务
+                this.scanEngine = new ScanEngine(databaseManager, getLogger(), cfg.getScanWorkerThreads());
                 this.scanScheduler = new ScanScheduler(this);
                 this.scanScheduler.start();
 
@@ -66,6 +69,9 @@ public class BeaconPlugin extends JavaPlugin {
         if (this.scanScheduler != null) {
             this.scanScheduler.stop();
         }
+        if (this.scanEngine != null) {
+            this.scanEngine.shutdown();
+        }
         if (this.socketServerManager != null) {
             this.socketServerManager.stop();
         }
@@ -78,6 +84,9 @@ public class BeaconPlugin extends JavaPlugin {
         } catch (Exception e) {
             getLogger().warning("Failed to backfill sessions on shutdown: " + e.getMessage());
         }
+        if (this.databaseManager != null) {
+            this.databaseManager.close();
+        }
         getLogger().info("Hydroline Beacon disabled!");
     }
 
@@ -89,24 +98,35 @@ public class BeaconPlugin extends JavaPlugin {
         return databaseManager;
     }
 
+    public ScanScheduler getScanScheduler() {
+        return scanScheduler;
+    }
+
+    public ScanEngine getScanEngine() {
+        return scanEngine;
+    }
+
     public WorldFileAccess getWorldFileAccess() {
         return worldFileAccess;
     }
 
     /**
      * Close any "open" sessions by inserting a synthetic QUIT for players whose latest event is JOIN.
-     * Returns number of players affected.
+     * Runs on the database writer and waits for it to commit. Returns number of players affected.
      */
-    private int closeOpenSessions(long occurredAt) throws SQLException {
+    private int closeOpenSessions(long occurredAt) throws Exception {
         if (this.databaseManager == null) return 0;
-        int affected = 0;
-        try (java.sql.Connection conn = this.databaseManager.getConnection()) {
+        return this.databaseManager.submitWrite(conn -> {
+            int affected = 0;
             String sql = "SELECT s.player_uuid, s.player_name, s.world_name, s.dimension_key, s.x, s.y, s.z " +
                     "FROM player_sessions s " +
                     "JOIN (SELECT player_uuid, MAX(id) AS last_id FROM player_sessions GROUP BY player_uuid) t " +
                     "ON t.last_id = s.id WHERE s.event_type = 'JOIN'";
             try (java.sql.PreparedStatement ps = conn.prepareStatement(sql);
-                 java.sql.ResultSet rs = ps.executeQuery()) {
+                 java.sql.ResultSet rs = ps.executeQuery();
+                 java.sql.PreparedStatement ins = conn.prepareStatement(
+                         "INSERT INTO player_sessions (event_type, occurred_at, player_uuid, player_name, player_ip, world_name, dimension_key, x, y, z) " +
+                                 "VALUES ('ABNORMAL_QUIT', ?, ?, ?, NULL, ?, ?, ?, ?, ?)")) {
                 while (rs.next()) {
                     String playerUuid = rs.getString(1);
                     String playerName = rs.getString(2);
@@ -116,23 +136,19 @@ public class BeaconPlugin extends JavaPlugin {
                     Double y = rs.getObject(6) != null ? rs.getDouble(6) : null;
                     Double z = rs.getObject(7) != null ? rs.getDouble(7) : null;
 
-                        try (java.sql.PreparedStatement ins = conn.prepareStatement(
-                            "INSERT INTO player_sessions (event_type, occurred_at, player_uuid, player_name, player_ip, world_name, dimension_key, x, y, z) " +
-                                "VALUES ('ABNORMAL_QUIT', ?, ?, ?, NULL, ?, ?, ?, ?, ?)")) {
-                        ins.setLong(1, occurredAt);
-                        ins.setString(2, playerUuid);
-                        ins.setString(3, playerName);
-                        ins.setString(4, worldName);
-                        ins.setString(5, dimensionKey);
-                        if (x != null) ins.setDouble(6, x); else ins.setNull(6, java.sql.Types.REAL);
-                        if (y != null) ins.setDouble(7, y); else ins.setNull(7, java.sql.Types.REAL);
-                        if (z != null) ins.setDouble(8, z); else ins.setNull(8, java.sql.Types.REAL);
-                        ins.executeUpdate();
-                        affected++;
-                    }
+                    ins.setLong(1, occurredAt);
+                    ins.setString(2, playerUuid);
+                    ins.setString(3, playerName);
+                    ins.setString(4, worldName);
+                    ins.setString(5, dimensionKey);
+                    if (x != null) ins.setDouble(6, x); else ins.setNull(6, java.sql.Types.REAL);
+                    if (y != null) ins.setDouble(7, y); else ins.setNull(7, java.sql.Types.REAL);
+                    if (z != null) ins.setDouble(8, z); else ins.setNull(8, java.sql.Types.REAL);
+                    ins.executeUpdate();
+                    affected++;
                 }
             }
-        }
-        return affected;
+            return affected;
+        }).get(30, java.util.concurrent.TimeUnit.SECONDS);
     }
 }
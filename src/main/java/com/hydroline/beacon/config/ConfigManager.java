@@ -1,5 +1,6 @@
 package com.hydroline.beacon.config;
 
+import com.hydroline.beacon.storage.PlayerNbtCacheFormat;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.plugin.java.JavaPlugin;
 
@@ -52,8 +53,114 @@ public class ConfigManager {
             cfg.set("nbt_cache_ttl_minutes", nbtCacheTtlMinutes);
         }
 
+        int dbReaderConnections = cfg.getInt("db_reader_connections");
+        if (dbReaderConnections <= 0) {
+            dbReaderConnections = 4;
+            cfg.set("db_reader_connections", dbReaderConnections);
+        }
+
+        long dbPoolTimeoutMillis = cfg.getLong("db_pool_timeout_ms");
+        if (dbPoolTimeoutMillis <= 0) {
+            dbPoolTimeoutMillis = 30000L;
+            cfg.set("db_pool_timeout_ms", dbPoolTimeoutMillis);
+        }
+
+        int dbCacheSizeKib = cfg.getInt("db_cache_size_kib");
+        if (dbCacheSizeKib <= 0) {
+            dbCacheSizeKib = 16384;
+            cfg.set("db_cache_size_kib", dbCacheSizeKib);
+        }
+
+        int dbMmapSizeMb = cfg.getInt("db_mmap_size_mb", -1);
+        if (dbMmapSizeMb < 0) {
+            dbMmapSizeMb = 256;
+            cfg.set("db_mmap_size_mb", dbMmapSizeMb);
+        }
+
+        long dbWriteBatchMillis = cfg.getLong("db_write_batch_ms");
+        if (dbWriteBatchMillis <= 0) {
+            dbWriteBatchMillis = 50L;
+            cfg.set("db_write_batch_ms", dbWriteBatchMillis);
+        }
+
+        int dbWriteBatchSize = cfg.getInt("db_write_batch_size");
+        if (dbWriteBatchSize <= 0) {
+            dbWriteBatchSize = 500;
+            cfg.set("db_write_batch_size", dbWriteBatchSize);
+        }
+
+        int scanWorkerThreads = cfg.getInt("scan_worker_threads");
+        if (scanWorkerThreads <= 0) {
+            scanWorkerThreads = 4;
+            cfg.set("scan_worker_threads", scanWorkerThreads);
+        }
+
+        if (!cfg.contains("file_watch")) {
+            cfg.set("file_watch", false);
+        }
+        boolean fileWatch = cfg.getBoolean("file_watch", false);
+
+        long fileWatchIntervalTicks = cfg.getLong("file_watch_interval_ticks");
+        if (fileWatchIntervalTicks <= 0) {
+            fileWatchIntervalTicks = 40L;
+            cfg.set("file_watch_interval_ticks", fileWatchIntervalTicks);
+        }
+
+        long fileWatchReconcileMinutes = cfg.getLong("file_watch_reconcile_minutes");
+        if (fileWatchReconcileMinutes <= 0) {
+            fileWatchReconcileMinutes = 10L;
+            cfg.set("file_watch_reconcile_minutes", fileWatchReconcileMinutes);
+        }
+
+        PlayerNbtCacheFormat nbtCacheFormat = PlayerNbtCacheFormat.fromConfigName(cfg.getString("nbt_cache_format"));
+        if (nbtCacheFormat == null) {
+            nbtCacheFormat = PlayerNbtCacheFormat.NBT;
+            cfg.set("nbt_cache_format", nbtCacheFormat.getConfigName());
+        }
+
+        int nbtMemoryCacheMb = cfg.getInt("nbt_memory_cache_mb");
+        if (nbtMemoryCacheMb <= 0) {
+            nbtMemoryCacheMb = 64;
+            cfg.set("nbt_memory_cache_mb", nbtMemoryCacheMb);
+        }
+
+        int socketHandlerThreads = cfg.getInt("socket_handler_threads");
+        if (socketHandlerThreads <= 0) {
+            socketHandlerThreads = 8;
+            cfg.set("socket_handler_threads", socketHandlerThreads);
+        }
+
+        int socketHandlerQueueSize = cfg.getInt("socket_handler_queue_size");
+        if (socketHandlerQueueSize <= 0) {
+            socketHandlerQueueSize = 256;
+            cfg.set("socket_handler_queue_size", socketHandlerQueueSize);
+        }
+
+        long mainThreadTimeoutMillis = cfg.getLong("main_thread_timeout_ms");
+        if (mainThreadTimeoutMillis <= 0) {
+            mainThreadTimeoutMillis = 5000L;
+            cfg.set("main_thread_timeout_ms", mainThreadTimeoutMillis);
+        }
+
+        long serverSnapshotIntervalTicks = cfg.getLong("server_snapshot_interval_ticks");
+        if (serverSnapshotIntervalTicks <= 0) {
+            serverSnapshotIntervalTicks = 10L;
+            cfg.set("server_snapshot_interval_ticks", serverSnapshotIntervalTicks);
+        }
+
+        long balanceSyncIntervalTicks = cfg.getLong("balance_sync_interval_ticks");
+        if (balanceSyncIntervalTicks <= 0) {
+            balanceSyncIntervalTicks = 20L;
+            cfg.set("balance_sync_interval_ticks", balanceSyncIntervalTicks);
+        }
+
         plugin.saveConfig();
-        currentConfig = new PluginConfig(port, key, intervalTicks, version, nbtCacheTtlMinutes);
+        currentConfig = new PluginConfig(port, key, intervalTicks, version, nbtCacheTtlMinutes,
+                dbReaderConnections, dbPoolTimeoutMillis, dbCacheSizeKib, dbMmapSizeMb,
+                dbWriteBatchMillis, dbWriteBatchSize, scanWorkerThreads,
+                fileWatch, fileWatchIntervalTicks, fileWatchReconcileMinutes, nbtCacheFormat,
+                nbtMemoryCacheMb, socketHandlerThreads, socketHandlerQueueSize, mainThreadTimeoutMillis,
+                serverSnapshotIntervalTicks, balanceSyncIntervalTicks);
     }
 
     public PluginConfig getCurrentConfig() {
@@ -1,5 +1,6 @@
 package com.hydroline.beacon.config;
 
+import com.hydroline.beacon.storage.PlayerNbtCacheFormat;
 import org.bukkit.configuration.file.FileConfiguration;
 
 public class PluginConfig {
@@ -9,13 +10,68 @@ public class PluginConfig {
     private final long intervalTimeTicks;
     private final int version;
     private final long nbtCacheTtlMinutes;
+    private final int dbReaderConnections;
+    private final long dbPoolTimeoutMillis;
+    private final int dbCacheSizeKib;
+    private final int dbMmapSizeMb;
+    private final long dbWriteBatchMillis;
+    private final int dbWriteBatchSize;
+    private final int scanWorkerThreads;
+    private final boolean fileWatch;
+    private final long fileWatchIntervalTicks;
+    private final long fileWatchReconcileMinutes;
+    private final PlayerNbtCacheFormat nbtCacheFormat;
+    private final int nbtMemoryCacheMb;
+    private final int socketHandlerThreads;
+    private final int socketHandlerQueueSize;
+    private final long mainThreadTimeoutMillis;
+    private final long serverSnapshotIntervalTicks;
+    private final long balanceSyncIntervalTicks;
 
-    public PluginConfig(int port, String key, long intervalTimeTicks, int version, long nbtCacheTtlMinutes) {
+    public PluginConfig(int port,
+                        String key,
+                        long intervalTimeTicks,
+                        int version,
+                        long nbtCacheTtlMinutes,
+                        int dbReaderConnections,
+                        long dbPoolTimeoutMillis,
+                        int dbCacheSizeKib,
+                        int dbMmapSizeMb,
+                        long dbWriteBatchMillis,
+                        int dbWriteBatchSize,
+                        int scanWorkerThreads,
+                        boolean fileWatch,
+                        long fileWatchIntervalTicks,
+                        long fileWatchReconcileMinutes,
+                        PlayerNbtCacheFormat nbtCacheFormat,
+                        int nbtMemoryCacheMb,
+                        int socketHandlerThreads,
+                        int socketHandlerQueueSize,
+                        long mainThreadTimeoutMillis,
+                        long serverSnapshotIntervalTicks,
+                        long balanceSyncIntervalTicks) {
         this.port = port;
         this.key = key;
         this.intervalTimeTicks = intervalTimeTicks;
         this.version = version;
         this.nbtCacheTtlMinutes = nbtCacheTtlMinutes;
+        this.dbReaderConnections = dbReaderConnections;
+        this.dbPoolTimeoutMillis = dbPoolTimeoutMillis;
+        this.dbCacheSizeKib = dbCacheSizeKib;
+        this.dbMmapSizeMb = dbMmapSizeMb;
+        this.dbWriteBatchMillis = dbWriteBatchMillis;
+        this.dbWriteBatchSize = dbWriteBatchSize;
+        this.scanWorkerThreads = scanWorkerThreads;
+        this.fileWatch = fileWatch;
+        this.fileWatchIntervalTicks = fileWatchIntervalTicks;
+        this.fileWatchReconcileMinutes = fileWatchReconcileMinutes;
+        this.nbtCacheFormat = nbtCacheFormat;
+        this.nbtMemoryCacheMb = nbtMemoryCacheMb;
+        this.socketHandlerThreads = socketHandlerThreads;
+        this.socketHandlerQueueSize = socketHandlerQueueSize;
+        this.mainThreadTimeoutMillis = mainThreadTimeoutMillis;
+        this.serverSnapshotIntervalTicks = serverSnapshotIntervalTicks;
+        this.balanceSyncIntervalTicks = balanceSyncIntervalTicks;
     }
 
     public static PluginConfig fromConfig(FileConfiguration config) {
@@ -24,7 +80,32 @@ public class PluginConfig {
         long intervalTimeTicks = config.getLong("interval_time");
         int version = config.getInt("version");
         long nbtCacheTtlMinutes = config.getLong("nbt_cache_ttl_minutes", 10L);
-        return new PluginConfig(port, key, intervalTimeTicks, version, nbtCacheTtlMinutes);
+        int dbReaderConnections = config.getInt("db_reader_connections", 4);
+        long dbPoolTimeoutMillis = config.getLong("db_pool_timeout_ms", 30000L);
+        int dbCacheSizeKib = config.getInt("db_cache_size_kib", 16384);
+        int dbMmapSizeMb = config.getInt("db_mmap_size_mb", 256);
+        long dbWriteBatchMillis = config.getLong("db_write_batch_ms", 50L);
+        int dbWriteBatchSize = config.getInt("db_write_batch_size", 500);
+        int scanWorkerThreads = config.getInt("scan_worker_threads", 4);
+        boolean fileWatch = config.getBoolean("file_watch", false);
+        long fileWatchIntervalTicks = config.getLong("file_watch_interval_ticks", 40L);
+        long fileWatchReconcileMinutes = config.getLong("file_watch_reconcile_minutes", 10L);
+        PlayerNbtCacheFormat nbtCacheFormat = PlayerNbtCacheFormat.fromConfigName(config.getString("nbt_cache_format", "nbt"));
+        if (nbtCacheFormat == null) {
+            nbtCacheFormat = PlayerNbtCacheFormat.NBT;
+        }
+        int nbtMemoryCacheMb = config.getInt("nbt_memory_cache_mb", 64);
+        int socketHandlerThreads = config.getInt("socket_handler_threads", 8);
+        int socketHandlerQueueSize = config.getInt("socket_handler_queue_size", 256);
+        long mainThreadTimeoutMillis = config.getLong("main_thread_timeout_ms", 5000L);
+        long serverSnapshotIntervalTicks = config.getLong("server_snapshot_interval_ticks", 10L);
+        long balanceSyncIntervalTicks = config.getLong("balance_sync_interval_ticks", 20L);
+        return new PluginConfig(port, key, intervalTimeTicks, version, nbtCacheTtlMinutes,
+                dbReaderConnections, dbPoolTimeoutMillis, dbCacheSizeKib, dbMmapSizeMb,
+                dbWriteBatchMillis, dbWriteBatchSize, scanWorkerThreads,
+                fileWatch, fileWatchIntervalTicks, fileWatchReconcileMinutes, nbtCacheFormat,
+                nbtMemoryCacheMb, socketHandlerThreads, socketHandlerQueueSize, mainThreadTimeoutMillis,
+                serverSnapshotIntervalTicks, balanceSyncIntervalTicks);
     }
 
     public int getPort() {
@@ -46,5 +127,72 @@ public class PluginConfig {
     public long getNbtCacheTtlMinutes() {
         return nbtCacheTtlMinutes;
     }
-}
 
+    public int getDbReaderConnections() {
+        return dbReaderConnections;
+    }
+
+    public long getDbPoolTimeoutMillis() {
+        return dbPoolTimeoutMillis;
+    }
+
+    public int getDbCacheSizeKib() {
+        return dbCacheSizeKib;
+    }
+
+    public int getDbMmapSizeMb() {
+        return dbMmapSizeMb;
+    }
+
+    public long getDbWriteBatchMillis() {
+        return dbWriteBatchMillis;
+    }
+
+    public int getDbWriteBatchSize() {
+        return dbWriteBatchSize;
+    }
+
+    public int getScanWorkerThreads() {
+        return scanWorkerThreads;
+    }
+
+    public boolean isFileWatch() {
+        return fileWatch;
+    }
+
+    public long getFileWatchIntervalTicks() {
+        return fileWatchIntervalTicks;
+    }
+
+    public long getFileWatchReconcileMinutes() {
+        return fileWatchReconcileMinutes;
+    }
+
+    public PlayerNbtCacheFormat getNbtCacheFormat() {
+        return nbtCacheFormat;
+    }
+
+    public int getNbtMemoryCacheMb() {
+        return nbtMemoryCacheMb;
+    }
+
+    public int getSocketHandlerThreads() {
+        return socketHandlerThreads;
+    }
+
+    public int getSocketHandlerQueueSize() {
+        return socketHandlerQueueSize;
+    }
+
+    public long getMainThreadTimeoutMillis() {
+        return mainThreadTimeoutMillis;
+    }
+
+    public long getServerSnapshotIntervalTicks() {
+        return serverSnapshotIntervalTicks;
+    }
+
+    public long getBalanceSyncIntervalTicks() {
+        return balanceSyncIntervalTicks;
+    }
+}
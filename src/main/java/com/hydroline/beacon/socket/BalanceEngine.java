@@ -0,0 +1,382 @@
+package com.hydroline.beacon.socket;
+
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.scoreboard.Objective;
+import org.bukkit.scoreboard.Score;
+import org.bukkit.scoreboard.Scoreboard;
+import org.bukkit.scoreboard.ScoreboardManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Balances in the main scoreboard's {@code mtr_balance} objective. Reads are served from a concurrent mirror of the
+ * objective. The mirror is only resynchronized on demand: a read that finds it older than
+ * {@code balance_sync_interval_ticks} waits for one sync on the next tick (concurrent stale reads share it), so
+ * an idle server spends nothing on the scoreboard and changes made by other plugins or commands show up within
+ * one interval of being read. Writes go through the {@link MainThreadBridge}: all writes queued during a tick are
+ * applied in the same drain, reading the live score, and update the mirror right away.
+ */
+final class BalanceEngine {
+
+    static final String OBJECTIVE = "mtr_balance";
+    static final int MAX_TRANSFERS = 100;
+
+    /**
+     * One leg of a multi-player transfer.
+     */
+    static final class Transfer {
+        private final String from;
+        private final String to;
+        private final long amount;
+
+        Transfer(String from, String to, long amount) {
+            this.from = from;
+            this.to = to;
+            this.amount = amount;
+        }
+    }
+
+    private static final class Balance {
+        private final String entry;
+        private final int value;
+
+        private Balance(String entry, int value) {
+            this.entry = entry;
+            this.value = value;
+        }
+    }
+
+    private final MainThreadBridge mainThread;
+    private final long syncIntervalTicks;
+    private final long syncIntervalNanos;
+    // scoreboard entry -> balance, and lower-cased entry -> entry for case-insensitive player lookups
+    private final Map<String, Balance> mirror = new ConcurrentHashMap<>();
+    private final Map<String, String> entriesByLowerName = new ConcurrentHashMap<>();
+    private volatile boolean synced;
+    private volatile long syncedAtNanos;
+    private volatile String unavailable;
+    private final AtomicReference<CompletableFuture<Void>> pendingSync = new AtomicReference<>();
+
+    // main thread only: the objective resolved for the current bridge drain
+    private Objective objective;
+    private long objectiveDrain = -1L;
+
+    private final LongAdder syncs = new LongAdder();
+    private final LongAdder reads = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder transfers = new LongAdder();
+    private final LongAdder rejectedTransfers = new LongAdder();
+    private volatile long lastSyncNanos;
+
+    BalanceEngine(MainThreadBridge mainThread, long syncIntervalTicks) {
+        this.mainThread = mainThread;
+        this.syncIntervalTicks = syncIntervalTicks;
+        this.syncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(syncIntervalTicks * 50L);
+    }
+
+    CompletableFuture<Long> get(String playerName) {
+        if (isBlank(playerName)) {
+            return failed(new IllegalArgumentException("playerName is required"));
+        }
+        String name = playerName.trim();
+        return read(() -> (long) lookup(name));
+    }
+
+    /**
+     * @param names players to report, ignored when {@code all} is set
+     * @param all   report every scoreboard entry
+     */
+    CompletableFuture<List<Map<String, Object>>> list(List<String> names, boolean all) {
+        return read(() -> {
+            List<Map<String, Object>> rows = new ArrayList<>();
+            if (all) {
+                for (Balance balance : mirror.values()) {
+                    rows.add(row(balance.entry, balance.value));
+                }
+            } else if (names != null) {
+                for (String name : names) {
+                    if (name == null || name.trim().isEmpty()) continue;
+                    rows.add(row(name.trim(), lookup(name.trim())));
+                }
+            }
+            return rows;
+        });
+    }
+
+    CompletableFuture<Long> set(String playerName, long amount) {
+        if (isBlank(playerName)) {
+            return failed(new IllegalArgumentException("playerName is required"));
+        }
+        String name = playerName.trim();
+        return mainThread.submit(() -> {
+            Score score = liveObjective().getScore(resolvePlayer(name));
+            score.setScore((int) amount);
+            writes.increment();
+            return (long) record(score);
+        });
+    }
+
+    CompletableFuture<Long> add(String playerName, long delta) {
+        if (isBlank(playerName)) {
+            return failed(new IllegalArgumentException("playerName is required"));
+        }
+        String name = playerName.trim();
+        return mainThread.submit(() -> {
+            Score score = liveObjective().getScore(resolvePlayer(name));
+            long next = score.getScore() + delta;
+            if (next > Integer.MAX_VALUE) next = Integer.MAX_VALUE;
+            if (next < Integer.MIN_VALUE) next = Integer.MIN_VALUE;
+            score.setScore((int) next);
+            writes.increment();
+            return (long) record(score);
+        });
+    }
+
+    /**
+     * Apply every leg within one tick, or none of them: all legs are checked against the live scores first, and
+     * the batch is rejected when a sender would go below zero or a balance would leave the int range.
+     *
+     * @return the resulting balance of every player involved, in order of first appearance
+     */
+    CompletableFuture<List<Map<String, Object>>> transfer(List<Transfer> legs) {
+        if (legs == null || legs.isEmpty()) {
+            return failed(new IllegalArgumentException("transfers is required"));
+        }
+        if (legs.size() > MAX_TRANSFERS) {
+            return failed(new IllegalArgumentException("transfers must contain at most " + MAX_TRANSFERS + " entries"));
+        }
+        for (Transfer leg : legs) {
+            if (isBlank(leg.from) || isBlank(leg.to)) {
+                return failed(new IllegalArgumentException("transfer from and to are required"));
+            }
+            if (leg.amount <= 0) {
+                return failed(new IllegalArgumentException("transfer amount must be positive"));
+            }
+            if (leg.from.trim().equalsIgnoreCase(leg.to.trim())) {
+                return failed(new IllegalArgumentException("cannot transfer to the same player: " + leg.from.trim()));
+            }
+        }
+        return mainThread.submit(() -> {
+            Objective obj = liveObjective();
+            Map<String, Score> scores = new LinkedHashMap<>();
+            Map<String, Long> pending = new HashMap<>();
+            for (Transfer leg : legs) {
+                for (String name : new String[]{leg.from.trim(), leg.to.trim()}) {
+                    String key = name.toLowerCase(Locale.ROOT);
+                    if (!scores.containsKey(key)) {
+                        Score score = obj.getScore(resolvePlayer(name));
+                        scores.put(key, score);
+                        pending.put(key, (long) score.getScore());
+                    }
+                }
+                String fromKey = leg.from.trim().toLowerCase(Locale.ROOT);
+                String toKey = leg.to.trim().toLowerCase(Locale.ROOT);
+                long debited = pending.get(fromKey) - leg.amount;
+                long credited = pending.get(toKey) + leg.amount;
+                if (debited < 0) {
+                    rejectedTransfers.increment();
+                    throw new IllegalArgumentException("insufficient balance: " + scores.get(fromKey).getEntry());
+                }
+                if (credited > Integer.MAX_VALUE) {
+                    rejectedTransfers.increment();
+                    throw new IllegalArgumentException("balance overflow: " + scores.get(toKey).getEntry());
+                }
+                pending.put(fromKey, debited);
+                pending.put(toKey, credited);
+            }
+            List<Map<String, Object>> rows = new ArrayList<>();
+            for (Map.Entry<String, Score> entry : scores.entrySet()) {
+                Score score = entry.getValue();
+                score.setScore(pending.get(entry.getKey()).intValue());
+                rows.add(row(score.getEntry(), record(score)));
+            }
+            transfers.increment();
+            writes.add(scores.size());
+            return rows;
+        });
+    }
+
+    Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("entries", mirror.size());
+        stats.put("sync_interval_ticks", syncIntervalTicks);
+        stats.put("syncs", syncs.sum());
+        stats.put("last_sync_ms", Math.round(lastSyncNanos / 1000.0) / 1000.0);
+        stats.put("reads", reads.sum());
+        stats.put("writes", writes.sum());
+        stats.put("transfers", transfers.sum());
+        stats.put("rejected_transfers", rejectedTransfers.sum());
+        return stats;
+    }
+
+    private interface MirrorRead<V> {
+        V read();
+    }
+
+    // Serve from the mirror while it is fresh; otherwise resync on the next tick and read from that
+    private <V> CompletableFuture<V> read(MirrorRead<V> reader) {
+        reads.increment();
+        if (!synced || System.nanoTime() - syncedAtNanos >= syncIntervalNanos) {
+            return syncSoon().thenApply(ignored -> readMirror(reader));
+        }
+        try {
+            return CompletableFuture.completedFuture(readMirror(reader));
+        } catch (RuntimeException e) {
+            return failed(e);
+        }
+    }
+
+    // One sync per tick however many stale reads arrive; completes on the server thread
+    private CompletableFuture<Void> syncSoon() {
+        while (true) {
+            CompletableFuture<Void> pending = pendingSync.get();
+            if (pending != null) {
+                return pending;
+            }
+            CompletableFuture<Void> created = new CompletableFuture<>();
+            if (pendingSync.compareAndSet(null, created)) {
+                mainThread.<Void>submit(() -> {
+                    sync();
+                    return null;
+                }).whenComplete((ignored, error) -> {
+                    pendingSync.compareAndSet(created, null);
+                    if (error != null) {
+                        created.completeExceptionally(error);
+                    } else {
+                        created.complete(null);
+                    }
+                });
+                return created;
+            }
+        }
+    }
+
+    private <V> V readMirror(MirrorRead<V> reader) {
+        String reason = unavailable;
+        if (reason != null) {
+            throw new IllegalArgumentException(reason);
+        }
+        return reader.read();
+    }
+
+    // unset scores read as 0, as Score#getScore does
+    private int lookup(String name) {
+        Balance balance = mirror.get(name);
+        if (balance == null) {
+            String entry = entriesByLowerName.get(name.toLowerCase(Locale.ROOT));
+            balance = entry != null ? mirror.get(entry) : null;
+        }
+        return balance != null ? balance.value : 0;
+    }
+
+    /**
+     * Rebuild the mirror from the scoreboard. Runs on the server thread.
+     */
+    private void sync() {
+        long start = System.nanoTime();
+        Objective obj = findObjective();
+        if (obj == null) {
+            mirror.clear();
+            entriesByLowerName.clear();
+        } else {
+            Set<String> seen = new HashSet<>();
+            for (String entry : obj.getScoreboard().getEntries()) {
+                // the main scoreboard holds entries of every objective; keep only those with a balance
+                Score score = obj.getScore(entry);
+                if (!score.isScoreSet()) {
+                    continue;
+                }
+                seen.add(entry);
+                put(entry, score.getScore());
+            }
+            mirror.keySet().retainAll(seen);
+            entriesByLowerName.values().retainAll(seen);
+        }
+        synced = true;
+        syncedAtNanos = System.nanoTime();
+        syncs.increment();
+        lastSyncNanos = syncedAtNanos - start;
+    }
+
+    private int record(Score score) {
+        int value = score.getScore();
+        put(score.getEntry(), value);
+        return value;
+    }
+
+    private void put(String entry, int value) {
+        mirror.put(entry, new Balance(entry, value));
+        entriesByLowerName.put(entry.toLowerCase(Locale.ROOT), entry);
+    }
+
+    // Writes in the same bridge drain share one objective lookup
+    private Objective liveObjective() {
+        long drain = mainThread.drainSequence();
+        if (objective == null || objectiveDrain != drain) {
+            objective = findObjective();
+            objectiveDrain = drain;
+        }
+        if (objective == null) {
+            throw new IllegalArgumentException(unavailable);
+        }
+        return objective;
+    }
+
+    private Objective findObjective() {
+        ScoreboardManager manager = Bukkit.getScoreboardManager();
+        if (manager == null) {
+            unavailable = "scoreboard manager not available";
+            return null;
+        }
+        Scoreboard main = manager.getMainScoreboard();
+        if (main == null) {
+            unavailable = "main scoreboard not available";
+            return null;
+        }
+        Objective obj = main.getObjective(OBJECTIVE);
+        if (obj == null) {
+            unavailable = "objective " + OBJECTIVE + " not found";
+            return null;
+        }
+        unavailable = null;
+        return obj;
+    }
+
+    private static OfflinePlayer resolvePlayer(String name) {
+        OfflinePlayer offlinePlayer = Bukkit.getOfflinePlayer(name);
+        if (offlinePlayer == null) {
+            throw new IllegalArgumentException("player not found: " + name);
+        }
+        return offlinePlayer;
+    }
+
+    private static boolean isBlank(String name) {
+        return name == null || name.trim().isEmpty();
+    }
+
+    private static <V> CompletableFuture<V> failed(Throwable error) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        future.completeExceptionally(error);
+        return future;
+    }
+
+    private static Map<String, Object> row(String player, int balance) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("player", player);
+        row.put("balance", balance);
+        return row;
+    }
+}
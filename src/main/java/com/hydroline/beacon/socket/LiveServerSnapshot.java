@@ -0,0 +1,205 @@
+package com.hydroline.beacon.socket;
+
+import org.bukkit.Bukkit;
+import org.bukkit.GameMode;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Immutable view of the online players, overworld time and player counts, rebuilt on the server thread every
+ * {@code server_snapshot_interval_ticks} and on join, quit and world change. Socket handlers read the latest
+ * snapshot from any thread without going through the main thread; values can be up to one interval old.
+ */
+public final class LiveServerSnapshot implements Listener {
+
+    public static final class Snapshot {
+        private final List<Map<String, Object>> players;
+        private final Map<String, Object> serverTime;
+        private final Map<String, Object> basics;
+        private final long capturedAt;
+
+        private Snapshot(List<Map<String, Object>> players,
+                         Map<String, Object> serverTime,
+                         Map<String, Object> basics,
+                         long capturedAt) {
+            this.players = players;
+            this.serverTime = serverTime;
+            this.basics = basics;
+            this.capturedAt = capturedAt;
+        }
+
+        /**
+         * @return the {@code list_online_players} entries
+         */
+        public List<Map<String, Object>> getPlayers() {
+            return players;
+        }
+
+        /**
+         * @return the {@code get_server_time} fields
+         */
+        public Map<String, Object> getServerTime() {
+            return serverTime;
+        }
+
+        /**
+         * @return {@code server_max_players} and {@code online_player_count}
+         */
+        public Map<String, Object> getBasics() {
+            return basics;
+        }
+
+        public long getCapturedAt() {
+            return capturedAt;
+        }
+    }
+
+    private final Plugin plugin;
+    private final long intervalTicks;
+    private final AtomicReference<Snapshot> current = new AtomicReference<>();
+    private final LongAdder refreshes = new LongAdder();
+    private BukkitTask refreshTask;
+    private volatile boolean stopped;
+
+    LiveServerSnapshot(Plugin plugin, long intervalTicks) {
+        this.plugin = plugin;
+        this.intervalTicks = intervalTicks;
+    }
+
+    /**
+     * Register the listeners and the refresh task on the server thread; until the first refresh runs,
+     * {@link #get()} returns null.
+     */
+    void start() {
+        Bukkit.getScheduler().runTask(plugin, () -> {
+            if (stopped) {
+                return;
+            }
+            Bukkit.getPluginManager().registerEvents(this, plugin);
+            refresh();
+            refreshTask = Bukkit.getScheduler().runTaskTimer(plugin, this::refresh, intervalTicks, intervalTicks);
+        });
+    }
+
+    /**
+     * Called from the server thread on disable.
+     */
+    void stop() {
+        stopped = true;
+        if (refreshTask != null) {
+            refreshTask.cancel();
+            refreshTask = null;
+        }
+        HandlerList.unregisterAll(this);
+    }
+
+    /**
+     * @return the latest snapshot, or null before the first refresh
+     */
+    Snapshot get() {
+        return current.get();
+    }
+
+    /**
+     * Rebuild and publish the snapshot. Must run on the server thread.
+     */
+    Snapshot refresh() {
+        return refresh(null);
+    }
+
+    Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        Snapshot snapshot = current.get();
+        stats.put("interval_ticks", intervalTicks);
+        stats.put("refreshes", refreshes.sum());
+        stats.put("age_ms", snapshot != null ? System.currentTimeMillis() - snapshot.capturedAt : null);
+        return stats;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        refresh(null);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        // the quitting player is still listed as online while the event runs
+        refresh(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerChangedWorld(PlayerChangedWorldEvent event) {
+        refresh(null);
+    }
+
+    private Snapshot refresh(UUID leaving) {
+        List<Map<String, Object>> players = new ArrayList<>();
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            if (leaving != null && leaving.equals(player.getUniqueId())) {
+                continue;
+            }
+            Map<String, Object> item = new HashMap<>();
+            item.put("uuid", player.getUniqueId().toString());
+            item.put("name", player.getName());
+            item.put("health", player.getHealth());
+            item.put("max_health", player.getMaxHealth());
+            GameMode gameMode = player.getGameMode();
+            item.put("game_mode", gameMode != null ? gameMode.name() : null);
+            World world = player.getWorld();
+            item.put("world", world != null ? world.getName() : null);
+            players.add(Collections.unmodifiableMap(item));
+        }
+
+        Map<String, Object> basics = new HashMap<>();
+        basics.put("server_max_players", Bukkit.getMaxPlayers());
+        basics.put("online_player_count", players.size());
+
+        Snapshot snapshot = new Snapshot(Collections.unmodifiableList(players),
+                Collections.unmodifiableMap(collectServerTime()),
+                Collections.unmodifiableMap(basics),
+                System.currentTimeMillis());
+        current.set(snapshot);
+        refreshes.increment();
+        return snapshot;
+    }
+
+    private static Map<String, Object> collectServerTime() {
+        Map<String, Object> result = new HashMap<>();
+        World world = null;
+        for (World w : Bukkit.getWorlds()) {
+            world = w;
+            break;
+        }
+        if (world == null) {
+            result.put("world", null);
+            result.put("time", null);
+            result.put("full_time", null);
+            result.put("do_daylight_cycle", null);
+            return result;
+        }
+        result.put("world", world.getName());
+        result.put("time", world.getTime());
+        result.put("full_time", world.getFullTime());
+        String gamerule = world.getGameRuleValue("doDaylightCycle");
+        result.put("do_daylight_cycle", gamerule);
+        return result;
+    }
+}
@@ -0,0 +1,178 @@
+package com.hydroline.beacon.socket;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs Bukkit calls for socket handlers on the server thread without blocking the caller. Calls are queued and a
+ * task drains the queue once per tick, so everything submitted during a tick runs together in one batch. Each
+ * call has a deadline: if the server thread has not started it by then, the returned future fails with a
+ * {@link TimeoutException} and the call is dropped. A call that has started always runs to completion.
+ * <p>
+ * Futures complete on the server thread (or the timeout thread), so dependent stages must not block.
+ */
+final class MainThreadBridge {
+
+    private static final int PENDING = 0;
+    private static final int RUNNING = 1;
+    private static final int ABANDONED = 2;
+
+    private final class Task<V> {
+        private final Callable<V> call;
+        private final CompletableFuture<V> future = new CompletableFuture<>();
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+        private final long queuedAtNanos = System.nanoTime();
+        private ScheduledFuture<?> timeout;
+
+        private Task(Callable<V> call) {
+            this.call = call;
+        }
+
+        private boolean run() {
+            if (!state.compareAndSet(PENDING, RUNNING)) {
+                return false;
+            }
+            timeout.cancel(false);
+            waitNanos.add(System.nanoTime() - queuedAtNanos);
+            try {
+                future.complete(call.call());
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            }
+            return true;
+        }
+
+        private boolean abandon(Exception reason) {
+            if (!state.compareAndSet(PENDING, ABANDONED)) {
+                return false;
+            }
+            future.completeExceptionally(reason);
+            return true;
+        }
+    }
+
+    private final Plugin plugin;
+    private final long timeoutMillis;
+    private final Queue<Task<?>> queue = new ConcurrentLinkedQueue<>();
+    private final ScheduledThreadPoolExecutor timer;
+    private BukkitTask drainTask;
+    private volatile boolean stopped;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private volatile int batchSizeMax;
+    // server thread only
+    private long drainSequence;
+
+    MainThreadBridge(Plugin plugin, long timeoutMillis) {
+        this.plugin = plugin;
+        this.timeoutMillis = timeoutMillis;
+        this.timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+            thread.setName("Beacon-MainThread-Timeout");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.timer.setRemoveOnCancelPolicy(true);
+    }
+
+    void start() {
+        drainTask = Bukkit.getScheduler().runTaskTimer(plugin, this::drain, 1L, 1L);
+    }
+
+    /**
+     * Fail everything still queued and stop draining. Called from the server thread on disable.
+     */
+    void stop() {
+        stopped = true;
+        if (drainTask != null) {
+            drainTask.cancel();
+            drainTask = null;
+        }
+        Task<?> task;
+        while ((task = queue.poll()) != null) {
+            task.abandon(new IllegalStateException("socket server stopped"));
+        }
+        timer.shutdownNow();
+    }
+
+    /**
+     * Queue a call for the next tick.
+     *
+     * @return a future completed with the call's result, its exception, or a {@link TimeoutException} when the
+     * server thread did not reach it within the deadline
+     */
+    <V> CompletableFuture<V> submit(Callable<V> call) {
+        Task<V> task = new Task<>(call);
+        if (stopped) {
+            task.abandon(new IllegalStateException("socket server stopped"));
+            return task.future;
+        }
+        task.timeout = timer.schedule(() -> {
+            if (task.abandon(new TimeoutException("server thread did not respond within " + timeoutMillis + " ms"))) {
+                timedOut.increment();
+            }
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+        submitted.increment();
+        queue.add(task);
+        return task.future;
+    }
+
+    /**
+     * @return a number that stays the same for all calls run by one drain; only meaningful on the server thread
+     */
+    long drainSequence() {
+        return drainSequence;
+    }
+
+    Map<String, Object> snapshot() {
+        Map<String, Object> stats = new HashMap<>();
+        long executedCount = executed.sum();
+        long batchCount = batches.sum();
+        stats.put("timeout_ms", timeoutMillis);
+        stats.put("submitted", submitted.sum());
+        stats.put("executed", executedCount);
+        stats.put("timed_out", timedOut.sum());
+        stats.put("batches", batchCount);
+        stats.put("batch_size_avg", batchCount > 0 ? Math.round(executedCount * 10.0 / batchCount) / 10.0 : 0.0);
+        stats.put("batch_size_max", batchSizeMax);
+        stats.put("wait_avg_ms", executedCount > 0 ? Math.round(waitNanos.sum() / 1000.0 / executedCount) / 1000.0 : 0.0);
+        return stats;
+    }
+
+    private void drain() {
+        drainSequence++;
+        int batchSize = 0;
+        Task<?> task;
+        while ((task = queue.poll()) != null) {
+            if (task.run()) {
+                batchSize++;
+            }
+        }
+        if (batchSize > 0) {
+            batches.increment();
+            executed.add(batchSize);
+            if (batchSize > batchSizeMax) {
+                batchSizeMax = batchSize;
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.hydroline.beacon.socket;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque keyset cursor: the sort value and id of the last row of a page, plus a scope naming the query it belongs
+ * to (table, sort column and direction), so a cursor cannot be replayed against a differently ordered listing.
+ * Encoded as URL-safe base64 of {@code scope|id|value}, where value is {@code -} for SQL NULL or {@code =} followed
+ * by the text.
+ */
+final class PageCursor {
+
+    private final long id;
+    private final String value;
+
+    private PageCursor(long id, String value) {
+        this.id = id;
+        this.value = value;
+    }
+
+    static String encode(String scope, long id, Object value) {
+        String raw = scope + "|" + id + "|" + (value == null ? "-" : "=" + value);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return the decoded cursor, or null when {@code cursor} is null or empty
+     * @throws IllegalArgumentException when the cursor is malformed or was issued for another scope
+     */
+    static PageCursor decode(String cursor, String scope) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("invalid cursor");
+        }
+        String[] parts = raw.split("\\|", 3);
+        if (parts.length != 3 || !parts[0].equals(scope) || parts[2].isEmpty()) {
+            throw new IllegalArgumentException("invalid cursor for this query");
+        }
+        long id;
+        try {
+            id = Long.parseLong(parts[1]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid cursor");
+        }
+        return new PageCursor(id, parts[2].charAt(0) == '-' ? null : parts[2].substring(1));
+    }
+
+    long getId() {
+        return id;
+    }
+
+    /**
+     * @return the sort value as text, or null when the row's sort column was NULL
+     */
+    String getValue() {
+        return value;
+    }
+
+    Long getLongValue() {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.hydroline.beacon.socket;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces identical concurrent requests: while a load for a key is running, later callers with the same key wait
+ * for it and receive the same result (or exception) instead of starting their own. Nothing is cached once the
+ * load finishes. Results are shared between callers and must not be modified.
+ */
+final class SingleFlight {
+
+    interface Loader<V> {
+        V load() throws Exception;
+    }
+
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    <V> V execute(String key, Loader<V> loader) throws Exception {
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            coalesced.increment();
+            try {
+                return (V) running.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof Exception) {
+                    throw (Exception) cause;
+                }
+                throw (Error) cause;
+            }
+        }
+        executions.increment();
+        try {
+            V value = loader.load();
+            mine.complete(value);
+            return value;
+        } catch (Exception | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    Map<String, Object> snapshot() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("executions", executions.sum());
+        stats.put("coalesced", coalesced.sum());
+        stats.put("in_flight", inFlight.size());
+        return stats;
+    }
+}
@@ -1,21 +1,22 @@
 package com.hydroline.beacon.socket;
 
+import com.corundumstudio.socketio.AckMode;
 import com.corundumstudio.socketio.AckRequest;
 import com.corundumstudio.socketio.Configuration;
 import com.corundumstudio.socketio.HandshakeData;
 import com.corundumstudio.socketio.SocketIOClient;
 import com.corundumstudio.socketio.SocketIOServer;
 import com.corundumstudio.socketio.listener.ConnectListener;
+import com.corundumstudio.socketio.listener.DataListener;
 import com.corundumstudio.socketio.listener.DisconnectListener;
 import com.corundumstudio.socketio.listener.ExceptionListener;
 import com.hydroline.beacon.BeaconPlugin;
 import com.hydroline.beacon.config.PluginConfig;
-import com.hydroline.beacon.task.AdvancementsAndStatsScanner;
-import com.hydroline.beacon.task.MtrLogsScanner;
-import org.bukkit.Bukkit;
-import org.bukkit.GameMode;
-import org.bukkit.World;
-import org.bukkit.entity.Player;
+import com.hydroline.beacon.storage.PlayerNbtCacheFormat;
+import com.hydroline.beacon.storage.PlayerNbtMemoryCache;
+import com.hydroline.beacon.task.ScanScheduler;
+import com.hydroline.beacon.util.NbtProjection;
+import com.hydroline.beacon.util.NbtUtils;
 
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.HttpHeaders;
@@ -26,21 +27,40 @@ import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 public class SocketServerManager {
 
+    private static final List<String> NBT_IDENTITY_PATHS = Arrays.asList(
+            "bukkit.lastKnownName", "bukkit.firstPlayed", "bukkit.lastPlayed", "firstPlayed", "lastPlayed");
+
     private final BeaconPlugin plugin;
     private SocketIOServer server;
     private final Map<UUID, Long> connectionOpenAt = new ConcurrentHashMap<>();
+    // identical in-flight player lookups share one load
+    private final SingleFlight singleFlight = new SingleFlight();
+    private volatile ThreadPoolExecutor handlerExecutor;
+    private final LongAdder handlerRejections = new LongAdder();
+    private volatile MainThreadBridge mainThread;
+    private volatile LiveServerSnapshot liveSnapshot;
+    private volatile BalanceEngine balanceEngine;
 
     public SocketServerManager(BeaconPlugin plugin) {
         this.plugin = plugin;
@@ -55,6 +75,19 @@ public class SocketServerManager {
 
         // Hook exception listener for logging abnormal disconnects and other errors
         configuration.setExceptionListener(new LoggingExceptionListener());
+        // Handlers ack from the handler executor; the default mode would send an empty ack as soon as onData returns
+        configuration.setAckMode(AckMode.MANUAL);
+
+        int handlerThreads = cfg.getSocketHandlerThreads();
+        handlerExecutor = new ThreadPoolExecutor(handlerThreads, handlerThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(cfg.getSocketHandlerQueueSize()), namedDaemon("Beacon-Socket-Handler"),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        mainThread = new MainThreadBridge(plugin, cfg.getMainThreadTimeoutMillis());
+        mainThread.start();
+        liveSnapshot = new LiveServerSnapshot(plugin, cfg.getServerSnapshotIntervalTicks());
+        liveSnapshot.start();
+        balanceEngine = new BalanceEngine(mainThread, cfg.getBalanceSyncIntervalTicks());
 
         server = new SocketIOServer(configuration);
         registerListeners();
@@ -70,6 +103,68 @@ public class SocketServerManager {
             server = null;
             plugin.getLogger().info("Socket.IO server stopped.");
         }
+        if (handlerExecutor != null) {
+            handlerExecutor.shutdownNow();
+            handlerExecutor = null;
+        }
+        if (liveSnapshot != null) {
+            liveSnapshot.stop();
+            liveSnapshot = null;
+        }
+        if (mainThread != null) {
+            mainThread.stop();
+            mainThread = null;
+        }
+    }
+
+    /**
+     * Register an event handler whose body runs on the bounded handler executor instead of the netty-socketio
+     * worker thread, so slow queries or a busy main thread cannot stall other clients on the same event loop.
+     * When the executor queue is full the request is answered with {@code BUSY} right away.
+     */
+    private <T> void addEventListener(String eventName, Class<T> eventClass, DataListener<T> listener) {
+        server.addEventListener(eventName, eventClass, (client, data, ackSender) -> {
+            ThreadPoolExecutor executor = handlerExecutor;
+            try {
+                if (executor == null) {
+                    throw new RejectedExecutionException("handler executor stopped");
+                }
+                executor.execute(() -> {
+                    try {
+                        listener.onData(client, data, ackSender);
+                    } catch (Exception e) {
+                        plugin.getLogger().warning("[Socket.IO] " + eventName + " handler failed: " + e.getMessage());
+                        sendError(ackSender, "INTERNAL_ERROR: " + e.getMessage());
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                handlerRejections.increment();
+                sendError(ackSender, "BUSY");
+            }
+        });
+    }
+
+    private Map<String, Object> getHandlerStats() {
+        Map<String, Object> stats = new HashMap<>();
+        ThreadPoolExecutor executor = handlerExecutor;
+        if (executor != null) {
+            stats.put("threads", executor.getMaximumPoolSize());
+            stats.put("active", executor.getActiveCount());
+            stats.put("queue_depth", executor.getQueue().size());
+            stats.put("queue_capacity", executor.getQueue().size() + executor.getQueue().remainingCapacity());
+            stats.put("completed", executor.getCompletedTaskCount());
+        }
+        stats.put("rejected", handlerRejections.sum());
+        return stats;
+    }
+
+    private static ThreadFactory namedDaemon(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
     }
 
     private void registerListeners() {
@@ -86,26 +181,21 @@ public class SocketServerManager {
             plugin.getLogger().info("[Socket.IO] Client disconnected: " + formatClientInfo(client) + ", sessionDuration=" + durationStr);
         });
 
-        server.addEventListener("force_update", ForceUpdateRequest.class,
+        addEventListener("force_update", ForceUpdateRequest.class,
                 (client, data, ackSender) -> {
                     if (!validateKey(data.getKey())) {
                         sendError(ackSender, "INVALID_KEY");
                         return;
                     }
-                    // Ack immediately to avoid cross-thread ack issues
+                    // The scan itself runs asynchronously; skipped while a scan of the same kind is running
+                    ScanScheduler scheduler = plugin.getScanScheduler();
                     Map<String, Object> accepted = new HashMap<>();
                     accepted.put("success", true);
-                    accepted.put("queued", true);
+                    accepted.put("queued", scheduler != null && scheduler.forceFullScan());
                     ackSender.sendAckData(accepted);
-
-                    // Then perform heavy work asynchronously
-                    Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
-                        new AdvancementsAndStatsScanner(plugin).scanOnce();
-                        new MtrLogsScanner(plugin).scanOnce();
-                    });
                 });
 
-        server.addEventListener("get_player_advancements", PlayerIdentityRequest.class,
+        addEventListener("get_player_advancements", PlayerIdentityRequest.class,
                 (client, data, ackSender) -> {
                     if (!validateKey(data.getKey())) {
                         sendError(ackSender, "INVALID_KEY");
@@ -117,12 +207,17 @@ public class SocketServerManager {
                         Set<String> filters = normalizeFilterKeys(data.getKeys());
                         int page = data.getPage() != null ? data.getPage() : 1;
                         int pageSize = data.getPageSize() != null ? data.getPageSize() : 100;
-                        Map<String, Object> result = loadAdvancementsForPlayer(
-                            uuid,
-                            filters,
-                            page,
-                            pageSize
-                        );
+                        boolean includeTotal = !Boolean.FALSE.equals(data.getIncludeTotal());
+                        Map<String, Object> result = singleFlight.execute(
+                            requestKey("get_player_advancements", uuid, filters, page, pageSize, data.getCursor(), includeTotal),
+                            () -> loadAdvancementsForPlayer(
+                                uuid,
+                                filters,
+                                page,
+                                pageSize,
+                                data.getCursor(),
+                                includeTotal
+                            ));
                         Map<String, String> advancements = (Map<String, String>) result.get("records");
                         Map<String, Object> resp = new HashMap<>();
                         resp.put("success", true);
@@ -131,13 +226,18 @@ public class SocketServerManager {
                         resp.put("total", result.get("total"));
                         resp.put("page", result.get("page"));
                         resp.put("page_size", result.get("page_size"));
+                        resp.put("next_cursor", result.get("next_cursor"));
                         ackSender.sendAckData(resp);
                     } catch (SQLException e) {
                         sendError(ackSender, "DB_ERROR: " + e.getMessage());
+                    } catch (IllegalArgumentException e) {
+                        sendError(ackSender, "INVALID_ARGUMENT: " + e.getMessage());
+                    } catch (Exception e) {
+                        sendError(ackSender, "INTERNAL_ERROR: " + e.getMessage());
                     }
                 });
 
-        server.addEventListener("get_player_stats", PlayerIdentityRequest.class,
+        addEventListener("get_player_stats", PlayerIdentityRequest.class,
                 (client, data, ackSender) -> {
                     if (!validateKey(data.getKey())) {
                         sendError(ackSender, "INVALID_KEY");
@@ -149,12 +249,17 @@ public class SocketServerManager {
                         Set<String> filters = normalizeFilterKeys(data.getKeys());
                         int page = data.getPage() != null ? data.getPage() : 1;
                         int pageSize = data.getPageSize() != null ? data.getPageSize() : 100;
-                        Map<String, Object> result = loadStatsForPlayer(
-                            uuid,
-                            filters,
-                            page,
-                            pageSize
-                        );
+                        boolean includeTotal = !Boolean.FALSE.equals(data.getIncludeTotal());
+                        Map<String, Object> result = singleFlight.execute(
+                            requestKey("get_player_stats", uuid, filters, page, pageSize, data.getCursor(), includeTotal),
+                            () -> loadStatsForPlayer(
+                                uuid,
+                                filters,
+                                page,
+                                pageSize,
+                                data.getCursor(),
+                                includeTotal
+                            ));
                         Map<String, Long> stats = (Map<String, Long>) result.get("records");
                         Map<String, Object> resp = new HashMap<>();
                         resp.put("success", true);
@@ -163,29 +268,34 @@ public class SocketServerManager {
                         resp.put("total", result.get("total"));
                         resp.put("page", result.get("page"));
                         resp.put("page_size", result.get("page_size"));
+                        resp.put("next_cursor", result.get("next_cursor"));
                         ackSender.sendAckData(resp);
                     } catch (SQLException e) {
                         sendError(ackSender, "DB_ERROR: " + e.getMessage());
+                    } catch (IllegalArgumentException e) {
+                        sendError(ackSender, "INVALID_ARGUMENT: " + e.getMessage());
+                    } catch (Exception e) {
+                        sendError(ackSender, "INTERNAL_ERROR: " + e.getMessage());
                     }
                 });
 
+        // Served from the live snapshot without blocking, so these two stay on the netty-socketio thread
         server.addEventListener("list_online_players", AuthOnlyRequest.class,
                 (client, data, ackSender) -> {
                     if (!validateKey(data.getKey())) {
                         sendError(ackSender, "INVALID_KEY");
                         return;
                     }
-                    try {
-                        Future<List<Map<String, Object>>> future =
-                                Bukkit.getScheduler().callSyncMethod(plugin, this::collectOnlinePlayers);
-                        List<Map<String, Object>> players = future.get();
+                    currentSnapshot().whenComplete((snapshot, error) -> {
+                        if (error != null) {
+                            sendMainThreadError(ackSender, error);
+                            return;
+                        }
                         Map<String, Object> resp = new HashMap<>();
                         resp.put("success", true);
-                        resp.put("players", players);
+                        resp.put("players", snapshot.getPlayers());
                         ackSender.sendAckData(resp);
-                    } catch (InterruptedException | ExecutionException e) {
-                        sendError(ackSender, "INTERNAL_ERROR: " + e.getMessage());
-                    }
+                    });
                 });
 
         server.addEventListener("get_server_time", AuthOnlyRequest.class,
@@ -194,21 +304,20 @@ public class SocketServerManager {
                         sendError(ackSender, "INVALID_KEY");
                         return;
                     }
-                    try {
-                        Future<Map<String, Object>> future =
-                                Bukkit.getScheduler().callSyncMethod(plugin, this::collectServerTime);
-                        Map<String, Object> info = future.get();
+                    currentSnapshot().whenComplete((snapshot, error) -> {
+                        if (error != null) {
+                            sendMainThreadError(ackSender, error);
+                            return;
+                        }
                         Map<String, Object> resp = new HashMap<>();
                         resp.put("success", true);
-                        resp.putAll(info);
+                        resp.putAll(snapshot.getServerTime());
                         ackSender.sendAckData(resp);
-                    } catch (InterruptedException | ExecutionException e) {
-                        sendError(ackSender, "INTERNAL_ERROR: " + e.getMessage());
-                    }
+                    });
                 });
 
         // get_player_mtr_logs: list MTR logs with optional filters & pagination
-        server.addEventListener("get_player_mtr_logs", MtrLogsQueryRequest.class,
+        addEventListener("get_player_mtr_logs", MtrLogsQueryRequest.class,
                 (client, data, ackSender) -> {
                     if (!validateKey(data.getKey())) {
                         sendError(ackSender, "INVALID_KEY");
@@ -231,7 +340,9 @@ public class SocketServerManager {
                                 data.getPage(),
                                 data.getPageSize(),
                                 data.getOrder(),
-                                data.getOrderColumn()
+                                data.getOrderColumn(),
+                                data.getCursor(),
+                                !Boolean.FALSE.equals(data.getIncludeTotal())
                         );
                         result.put("success", true);
                         ackSender.sendAckData(result);
@@ -243,7 +354,7 @@ public class SocketServerManager {
                 });
 
         // get_mtr_log_detail: fetch single log row by id
-        server.addEventListener("get_mtr_log_detail", MtrLogDetailRequest.class,
+        addEventListener("get_mtr_log_detail", MtrLogDetailRequest.class,
                 (client, data, ackSender) -> {
                     if (!validateKey(data.getKey())) {
                         sendError(ackSender, "INVALID_KEY");
@@ -269,7 +380,7 @@ public class SocketServerManager {
                 });
 
         // get_player_sessions: list player JOIN/QUIT sessions with filters & pagination
-        server.addEventListener("get_player_sessions", PlayerSessionsQueryRequest.class,
+        addEventListener("get_player_sessions", PlayerSessionsQueryRequest.class,
                 (client, data, ackSender) -> {
                     if (!validateKey(data.getKey())) {
                         sendError(ackSender, "INVALID_KEY");
@@ -290,7 +401,9 @@ public class SocketServerManager {
                                 data.getStartAt(),
                                 data.getEndAt(),
                                 data.getPage(),
-                                data.getPageSize()
+                                data.getPageSize(),
+                                data.getCursor(),
+                                !Boolean.FALSE.equals(data.getIncludeTotal())
                         );
                         result.put("success", true);
                         ackSender.sendAckData(result);
@@ -302,7 +415,7 @@ public class SocketServerManager {
                 });
 
         // lookup_player_identity: resolve UUID/name + metadata from player_identities table
-        server.addEventListener("lookup_player_identity", PlayerIdentityRequest.class,
+        addEventListener("lookup_player_identity", PlayerIdentityRequest.class,
                 (client, data, ackSender) -> {
                     if (!validateKey(data.getKey())) {
                         sendError(ackSender, "INVALID_KEY");
@@ -315,15 +428,17 @@ public class SocketServerManager {
                         return;
                     }
                     try {
-                        Map<String, Object> identity = null;
-                        if (hasUuid) {
-                            identity = loadIdentityByUuid(data.getPlayerUuid());
-                            if (identity == null && hasName) {
-                                identity = loadIdentityByName(data.getPlayerName());
-                            }
-                        } else if (hasName) {
-                            identity = loadIdentityByName(data.getPlayerName());
-                        }
+                        Map<String, Object> identity = singleFlight.execute(
+                                requestKey("lookup_player_identity", data.getPlayerUuid(), data.getPlayerName()),
+                                () -> {
+                                    if (hasUuid) {
+                                        Map<String, Object> byUuid = loadIdentityByUuid(data.getPlayerUuid());
+                                        if (byUuid != null || !hasName) {
+                                            return byUuid;
+                                        }
+                                    }
+                                    return loadIdentityByName(data.getPlayerName());
+                                });
                         if (identity == null) {
                             sendError(ackSender, "NOT_FOUND");
                             return;
@@ -341,11 +456,13 @@ public class SocketServerManager {
                         ackSender.sendAckData(resp);
                     } catch (SQLException e) {
                         sendError(ackSender, "DB_ERROR: " + e.getMessage());
+                    } catch (Exception e) {
+                        sendError(ackSender, "INTERNAL_ERROR: " + e.getMessage());
                     }
                 });
 
         // list_player_identities: paginated dump of player_identities table
-        server.addEventListener("list_player_identities", PlayerIdentitiesListRequest.class,
+        addEventListener("list_player_identities", PlayerIdentitiesListRequest.class,
                 (client, data, ackSender) -> {
                     if (!validateKey(data.getKey())) {
                         sendError(ackSender, "INVALID_KEY");
@@ -354,27 +471,46 @@ public class SocketServerManager {
                     try {
                         Map<String, Object> result = loadPlayerIdentities(
                                 data.getPage(),
-                                data.getPageSize()
+                                data.getPageSize(),
+                                data.getCursor(),
+                                !Boolean.FALSE.equals(data.getIncludeTotal())
                         );
                         result.put("success", true);
                         ackSender.sendAckData(result);
                     } catch (SQLException e) {
                         sendError(ackSender, "DB_ERROR: " + e.getMessage());
+                    } catch (IllegalArgumentException e) {
+                        sendError(ackSender, "INVALID_ARGUMENT: " + e.getMessage());
                     }
                 });
 
         // get_player_nbt: return raw NBT as JSON (cached in SQLite for X minutes)
-        server.addEventListener("get_player_nbt", PlayerIdentityRequest.class,
+        addEventListener("get_player_nbt", PlayerIdentityRequest.class,
                 (client, data, ackSender) -> {
                     if (!validateKey(data.getKey())) { sendError(ackSender, "INVALID_KEY"); return; }
                     try {
                         String uuid = ensurePlayerUuid(data.getPlayerUuid(), data.getPlayerName());
                         if (uuid == null) { sendError(ackSender, "NOT_FOUND"); return; }
+                        NbtUtils.ArrayEncoding arrayEncoding;
+                        NbtProjection projection;
+                        try {
+                            arrayEncoding = NbtUtils.ArrayEncoding.fromString(data.getArrayEncoding());
+                            projection = data.getPaths() == null || data.getPaths().isEmpty()
+                                    ? null : NbtProjection.parse(data.getPaths());
+                        } catch (IllegalArgumentException e) {
+                            sendError(ackSender, "INVALID_ARGUMENT: " + e.getMessage());
+                            return;
+                        }
                         Map<String, Object> resp = new HashMap<>();
-                        String json = getPlayerNbtJsonCached(uuid);
+                        Object nbt = singleFlight.execute(
+                                requestKey("get_player_nbt", uuid, arrayEncoding, data.getPaths()),
+                                () -> {
+                                    String json = getPlayerNbtJsonCached(uuid, arrayEncoding, projection);
+                                    return json != null ? com.fasterxml.jackson.databind.json.JsonMapper.builder().build().readTree(json) : null;
+                                });
                         resp.put("success", true);
                         resp.put("player_uuid", uuid);
-                        resp.put("nbt", json != null ? com.fasterxml.jackson.databind.json.JsonMapper.builder().build().readTree(json) : null);
+                        resp.put("nbt", nbt);
                         ackSender.sendAckData(resp);
                     } catch (SQLException e) {
                         sendError(ackSender, "DB_ERROR: " + e.getMessage());
@@ -384,20 +520,14 @@ public class SocketServerManager {
                 });
 
         // get_status: heartbeat/status snapshot
-        server.addEventListener("get_status", AuthOnlyRequest.class,
+        addEventListener("get_status", AuthOnlyRequest.class,
                 (client, data, ackSender) -> {
                     if (!validateKey(data.getKey())) {
                         sendError(ackSender, "INVALID_KEY");
                         return;
                     }
                     try {
-                        // Collect Bukkit server basics on main thread
-                        Future<Map<String, Object>> futureBasics =
-                                Bukkit.getScheduler().callSyncMethod(plugin, this::collectServerBasics);
-                        Map<String, Object> basics = futureBasics.get();
-
-                        // Load DB totals
-                        Map<String, Long> totals = loadDataTotals();
+                        CompletableFuture<LiveServerSnapshot.Snapshot> futureSnapshot = currentSnapshot();
 
                         Map<String, Object> resp = new HashMap<>();
                         PluginConfig cfg = plugin.getConfigManager().getCurrentConfig();
@@ -405,18 +535,32 @@ public class SocketServerManager {
                         resp.put("success", true);
                         resp.put("interval_time_ticks", ticks);
                         resp.put("interval_time_seconds", ticks / 20.0);
-                        resp.putAll(basics);
-                        resp.putAll(totals);
-                        ackSender.sendAckData(resp);
-                    } catch (InterruptedException | ExecutionException e) {
-                        sendError(ackSender, "INTERNAL_ERROR: " + e.getMessage());
+                        resp.putAll(loadDataTotals());
+                        resp.put("db_pool", plugin.getDatabaseManager().getPoolStats());
+                        resp.put("db_write_queue", plugin.getDatabaseManager().getWriteQueueStats());
+                        resp.put("nbt_memory_cache", plugin.getDatabaseManager().getPlayerNbtMemoryCache().snapshot());
+                        resp.put("request_coalescing", singleFlight.snapshot());
+                        resp.put("socket_handlers", getHandlerStats());
+                        resp.put("main_thread_bridge", mainThread.snapshot());
+                        resp.put("server_snapshot", liveSnapshot.stats());
+                        resp.put("balance_engine", balanceEngine.stats());
+                        resp.put("totals_cache", plugin.getDatabaseManager().getTotalsCache().snapshot());
+
+                        futureSnapshot.whenComplete((snapshot, error) -> {
+                            if (error != null) {
+                                sendMainThreadError(ackSender, error);
+                                return;
+                            }
+                            resp.putAll(snapshot.getBasics());
+                            ackSender.sendAckData(resp);
+                        });
                     } catch (SQLException e) {
                         sendError(ackSender, "DB_ERROR: " + e.getMessage());
                     }
                 });
 
         // get_players_data: batch fetch balance/stats/advancements for multiple players
-        server.addEventListener("get_players_data", PlayersDataRequest.class,
+        addEventListener("get_players_data", PlayersDataRequest.class,
                 (client, data, ackSender) -> {
                     if (!validateKey(data.getKey())) {
                         sendError(ackSender, "INVALID_KEY");
@@ -456,6 +600,7 @@ public class SocketServerManager {
                         }
 
                         Map<String, Object> resp = new HashMap<>();
+                        CompletableFuture<List<Map<String, Object>>> balancesFuture = null;
 
                         if (includeBalance || includeBalanceAll) {
                             List<String> balanceNames = new ArrayList<>();
@@ -474,10 +619,7 @@ public class SocketServerManager {
                                     throw new IllegalArgumentException("playerNames or playerUuids required when includeBalance is true");
                                 }
                             }
-                            Future<List<Map<String, Object>>> future = Bukkit.getScheduler().callSyncMethod(plugin, () ->
-                                    collectBalancesMainScoreboard(includeBalanceAll ? null : balanceNames, includeBalanceAll));
-                            List<Map<String, Object>> balances = future.get();
-                            resp.put("balances", balances);
+                            balancesFuture = balanceEngine.list(includeBalanceAll ? null : balanceNames, includeBalanceAll);
                         }
 
                         if (needStats) {
@@ -491,22 +633,27 @@ public class SocketServerManager {
                         }
 
                         resp.put("success", true);
-                        ackSender.sendAckData(resp);
+                        if (balancesFuture == null) {
+                            ackSender.sendAckData(resp);
+                            return;
+                        }
+                        balancesFuture.whenComplete((balances, error) -> {
+                            if (error != null) {
+                                sendMainThreadError(ackSender, error);
+                                return;
+                            }
+                            resp.put("balances", balances);
+                            ackSender.sendAckData(resp);
+                        });
                     } catch (IllegalArgumentException e) {
                         sendError(ackSender, "INVALID_ARGUMENT: " + e.getMessage());
                     } catch (SQLException e) {
                         sendError(ackSender, "DB_ERROR: " + e.getMessage());
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        sendError(ackSender, "INTERNAL_ERROR: interrupted");
-                    } catch (ExecutionException e) {
-                        Throwable cause = e.getCause();
-                        sendError(ackSender, "INTERNAL_ERROR: " + (cause != null ? cause.getMessage() : e.getMessage()));
                     }
                 });
 
         // execute_sql: read-only SELECT/PRAGMA helper for admin/GraphQL bridge
-        server.addEventListener("execute_sql", ExecuteSqlRequest.class,
+        addEventListener("execute_sql", ExecuteSqlRequest.class,
                 (client, data, ackSender) -> {
                     if (!validateKey(data.getKey())) {
                         sendError(ackSender, "INVALID_KEY");
@@ -524,211 +671,63 @@ public class SocketServerManager {
                 });
 
         // mtr_balance: get/set/add player balance from main scoreboard objective
-        server.addEventListener("get_player_balance", PlayerBalanceRequest.class,
+        addEventListener("get_player_balance", PlayerBalanceRequest.class,
                 (client, data, ackSender) -> {
                     if (!validateKey(data.getKey())) {
                         sendError(ackSender, "INVALID_KEY");
                         return;
                     }
-                    try {
-                        Future<Long> future = Bukkit.getScheduler().callSyncMethod(plugin, () ->
-                                getPlayerBalanceOnMainScoreboard(data.getPlayerName()));
-                        Long value = future.get();
-                        Map<String, Object> resp = new HashMap<>();
-                        resp.put("success", true);
-                        resp.put("player", data.getPlayerName());
-                        resp.put("balance", value);
-                        ackSender.sendAckData(resp);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        sendError(ackSender, "INTERNAL_ERROR: interrupted");
-                    } catch (ExecutionException e) {
-                        Throwable cause = e.getCause();
-                        if (cause instanceof IllegalArgumentException) {
-                            sendError(ackSender, "INVALID_ARGUMENT: " + cause.getMessage());
-                        } else {
-                            sendError(ackSender, "INTERNAL_ERROR: " + (cause != null ? cause.getMessage() : e.getMessage()));
-                        }
-                    } catch (IllegalArgumentException e) {
-                        sendError(ackSender, "INVALID_ARGUMENT: " + e.getMessage());
-                    }
+                    ackBalance(ackSender, data.getPlayerName(), balanceEngine.get(data.getPlayerName()));
                 });
 
-        server.addEventListener("set_player_balance", PlayerBalanceUpdateRequest.class,
+        addEventListener("set_player_balance", PlayerBalanceUpdateRequest.class,
                 (client, data, ackSender) -> {
                     if (!validateKey(data.getKey())) {
                         sendError(ackSender, "INVALID_KEY");
                         return;
                     }
-                    try {
-                        Future<Long> future = Bukkit.getScheduler().callSyncMethod(plugin, () ->
-                                setPlayerBalanceOnMainScoreboard(data.getPlayerName(), data.getAmount()));
-                        Long value = future.get();
-                        Map<String, Object> resp = new HashMap<>();
-                        resp.put("success", true);
-                        resp.put("player", data.getPlayerName());
-                        resp.put("balance", value);
-                        ackSender.sendAckData(resp);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        sendError(ackSender, "INTERNAL_ERROR: interrupted");
-                    } catch (ExecutionException e) {
-                        Throwable cause = e.getCause();
-                        if (cause instanceof IllegalArgumentException) {
-                            sendError(ackSender, "INVALID_ARGUMENT: " + cause.getMessage());
-                        } else {
-                            sendError(ackSender, "INTERNAL_ERROR: " + (cause != null ? cause.getMessage() : e.getMessage()));
-                        }
-                    } catch (IllegalArgumentException e) {
-                        sendError(ackSender, "INVALID_ARGUMENT: " + e.getMessage());
+                    ackBalance(ackSender, data.getPlayerName(), balanceEngine.set(data.getPlayerName(), data.getAmount()));
+                });
+
+        addEventListener("add_player_balance", PlayerBalanceUpdateRequest.class,
+                (client, data, ackSender) -> {
+                    if (!validateKey(data.getKey())) {
+                        sendError(ackSender, "INVALID_KEY");
+                        return;
                     }
+                    ackBalance(ackSender, data.getPlayerName(), balanceEngine.add(data.getPlayerName(), data.getAmount()));
                 });
 
-        server.addEventListener("add_player_balance", PlayerBalanceUpdateRequest.class,
+        // transfer_player_balance: several transfers applied together in one tick, or not at all
+        addEventListener("transfer_player_balance", PlayerBalanceTransferRequest.class,
                 (client, data, ackSender) -> {
                     if (!validateKey(data.getKey())) {
                         sendError(ackSender, "INVALID_KEY");
                         return;
                     }
-                    try {
-                        Future<Long> future = Bukkit.getScheduler().callSyncMethod(plugin, () ->
-                                addPlayerBalanceOnMainScoreboard(data.getPlayerName(), data.getAmount()));
-                        Long value = future.get();
+                    List<BalanceEngine.Transfer> legs = new ArrayList<>();
+                    if (data.getTransfers() != null) {
+                        for (BalanceTransfer transfer : data.getTransfers()) {
+                            if (transfer == null) {
+                                sendError(ackSender, "INVALID_ARGUMENT: transfer entries must not be null");
+                                return;
+                            }
+                            legs.add(new BalanceEngine.Transfer(transfer.getFrom(), transfer.getTo(), transfer.getAmount()));
+                        }
+                    }
+                    balanceEngine.transfer(legs).whenComplete((balances, error) -> {
+                        if (error != null) {
+                            sendMainThreadError(ackSender, error);
+                            return;
+                        }
                         Map<String, Object> resp = new HashMap<>();
                         resp.put("success", true);
-                        resp.put("player", data.getPlayerName());
-                        resp.put("balance", value);
+                        resp.put("balances", balances);
                         ackSender.sendAckData(resp);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        sendError(ackSender, "INTERNAL_ERROR: interrupted");
-                    } catch (ExecutionException e) {
-                        Throwable cause = e.getCause();
-                        if (cause instanceof IllegalArgumentException) {
-                            sendError(ackSender, "INVALID_ARGUMENT: " + cause.getMessage());
-                        } else {
-                            sendError(ackSender, "INTERNAL_ERROR: " + (cause != null ? cause.getMessage() : e.getMessage()));
-                        }
-                    } catch (IllegalArgumentException e) {
-                        sendError(ackSender, "INVALID_ARGUMENT: " + e.getMessage());
-                    }
+                    });
                 });
     }
 
-    private long getPlayerBalanceOnMainScoreboard(String playerName) {
-        if (playerName == null || playerName.trim().isEmpty()) {
-            throw new IllegalArgumentException("playerName is required");
-        }
-        org.bukkit.scoreboard.ScoreboardManager manager = Bukkit.getScoreboardManager();
-        if (manager == null) {
-            throw new IllegalArgumentException("scoreboard manager not available");
-        }
-        org.bukkit.scoreboard.Scoreboard main = manager.getMainScoreboard();
-        if (main == null) {
-            throw new IllegalArgumentException("main scoreboard not available");
-        }
-        org.bukkit.scoreboard.Objective obj = main.getObjective("mtr_balance");
-        if (obj == null) {
-            throw new IllegalArgumentException("objective mtr_balance not found");
-        }
-        org.bukkit.OfflinePlayer offlinePlayer = Bukkit.getOfflinePlayer(playerName);
-        if (offlinePlayer == null) {
-            throw new IllegalArgumentException("player not found: " + playerName);
-        }
-        org.bukkit.scoreboard.Score score = obj.getScore(offlinePlayer);
-        return score.getScore();
-    }
-
-    private long setPlayerBalanceOnMainScoreboard(String playerName, long amount) {
-        if (playerName == null || playerName.trim().isEmpty()) {
-            throw new IllegalArgumentException("playerName is required");
-        }
-        org.bukkit.scoreboard.ScoreboardManager manager = Bukkit.getScoreboardManager();
-        if (manager == null) {
-            throw new IllegalArgumentException("scoreboard manager not available");
-        }
-        org.bukkit.scoreboard.Scoreboard main = manager.getMainScoreboard();
-        if (main == null) {
-            throw new IllegalArgumentException("main scoreboard not available");
-        }
-        org.bukkit.scoreboard.Objective obj = main.getObjective("mtr_balance");
-        if (obj == null) {
-            throw new IllegalArgumentException("objective mtr_balance not found");
-        }
-        org.bukkit.OfflinePlayer offlinePlayer = Bukkit.getOfflinePlayer(playerName);
-        if (offlinePlayer == null) {
-            throw new IllegalArgumentException("player not found: " + playerName);
-        }
-        org.bukkit.scoreboard.Score score = obj.getScore(offlinePlayer);
-        score.setScore((int) amount);
-        return score.getScore();
-    }
-
-    private long addPlayerBalanceOnMainScoreboard(String playerName, long delta) {
-        if (playerName == null || playerName.trim().isEmpty()) {
-            throw new IllegalArgumentException("playerName is required");
-        }
-        org.bukkit.scoreboard.ScoreboardManager manager = Bukkit.getScoreboardManager();
-        if (manager == null) {
-            throw new IllegalArgumentException("scoreboard manager not available");
-        }
-        org.bukkit.scoreboard.Scoreboard main = manager.getMainScoreboard();
-        if (main == null) {
-            throw new IllegalArgumentException("main scoreboard not available");
-        }
-        org.bukkit.scoreboard.Objective obj = main.getObjective("mtr_balance");
-        if (obj == null) {
-            throw new IllegalArgumentException("objective mtr_balance not found");
-        }
-        org.bukkit.OfflinePlayer offlinePlayer = Bukkit.getOfflinePlayer(playerName);
-        if (offlinePlayer == null) {
-            throw new IllegalArgumentException("player not found: " + playerName);
-        }
-        org.bukkit.scoreboard.Score score = obj.getScore(offlinePlayer);
-        int current = score.getScore();
-        long next = current + delta;
-        if (next > Integer.MAX_VALUE) next = Integer.MAX_VALUE;
-        if (next < Integer.MIN_VALUE) next = Integer.MIN_VALUE;
-        score.setScore((int) next);
-        return score.getScore();
-    }
-
-    private List<Map<String, Object>> collectBalancesMainScoreboard(List<String> names, boolean all) {
-        org.bukkit.scoreboard.ScoreboardManager manager = Bukkit.getScoreboardManager();
-        if (manager == null) {
-            throw new IllegalArgumentException("scoreboard manager not available");
-        }
-        org.bukkit.scoreboard.Scoreboard main = manager.getMainScoreboard();
-        if (main == null) {
-            throw new IllegalArgumentException("main scoreboard not available");
-        }
-        org.bukkit.scoreboard.Objective obj = main.getObjective("mtr_balance");
-        if (obj == null) {
-            throw new IllegalArgumentException("objective mtr_balance not found");
-        }
-
-        List<Map<String, Object>> rows = new ArrayList<>();
-        if (all) {
-            for (String entry : obj.getScoreboard().getEntries()) {
-                org.bukkit.scoreboard.Score score = obj.getScore(entry);
-                Map<String, Object> row = new HashMap<>();
-                row.put("player", entry);
-                row.put("balance", score.getScore());
-                rows.add(row);
-            }
-        } else if (names != null) {
-            for (String name : names) {
-                if (name == null || name.trim().isEmpty()) continue;
-                org.bukkit.scoreboard.Score score = obj.getScore(name.trim());
-                Map<String, Object> row = new HashMap<>();
-                row.put("player", name.trim());
-                row.put("balance", score.getScore());
-                rows.add(row);
-            }
-        }
-        return rows;
-    }
-
     private String formatClientInfo(SocketIOClient client) {
         try {
             HandshakeData hs = client.getHandshakeData();
@@ -815,6 +814,65 @@ public class SocketServerManager {
         ackSender.sendAckData(resp);
     }
 
+    private void sendMainThreadError(AckRequest ackSender, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof TimeoutException) {
+            sendError(ackSender, "TIMEOUT: " + cause.getMessage());
+        } else if (cause instanceof IllegalArgumentException) {
+            sendError(ackSender, "INVALID_ARGUMENT: " + cause.getMessage());
+        } else {
+            sendError(ackSender, "INTERNAL_ERROR: " + cause.getMessage());
+        }
+    }
+
+    /**
+     * @return the live server snapshot, or a fresh one from the next tick if none has been taken yet
+     */
+    private CompletableFuture<LiveServerSnapshot.Snapshot> currentSnapshot() {
+        LiveServerSnapshot live = liveSnapshot;
+        LiveServerSnapshot.Snapshot snapshot = live.get();
+        if (snapshot != null) {
+            return CompletableFuture.completedFuture(snapshot);
+        }
+        return mainThread.submit(live::refresh);
+    }
+
+    private void ackBalance(AckRequest ackSender, String playerName, CompletableFuture<Long> future) {
+        future.whenComplete((value, error) -> {
+            if (error != null) {
+                sendMainThreadError(ackSender, error);
+                return;
+            }
+            Map<String, Object> resp = new HashMap<>();
+            resp.put("success", true);
+            resp.put("player", playerName);
+            resp.put("balance", value);
+            ackSender.sendAckData(resp);
+        });
+    }
+
+    /**
+     * Single-flight key for a request: the event name plus its normalized arguments. Collections are sorted, as
+     * the order of filter keys and NBT paths does not change the result.
+     */
+    private static String requestKey(String event, Object... args) {
+        StringBuilder sb = new StringBuilder(event);
+        for (Object arg : args) {
+            sb.append('\u0000');
+            if (arg instanceof java.util.Collection) {
+                List<String> sorted = new ArrayList<>();
+                for (Object item : (java.util.Collection<?>) arg) {
+                    sorted.add(String.valueOf(item));
+                }
+                java.util.Collections.sort(sorted);
+                sb.append(sorted);
+            } else {
+                sb.append(arg);
+            }
+        }
+        return sb.toString();
+    }
+
     private Set<String> normalizeFilterKeys(List<String> keys) {
         if (keys == null || keys.isEmpty()) {
             return null;
@@ -848,7 +906,9 @@ public class SocketServerManager {
     private Map<String, Object> loadAdvancementsForPlayer(String playerUuid,
                                                           Set<String> filterKeys,
                                                           int page,
-                                                          int pageSize) throws SQLException {
+                                                          int pageSize,
+                                                          String cursor,
+                                                          boolean includeTotal) throws SQLException {
         if (page <= 0) page = 1;
         if (pageSize <= 0) pageSize = 100;
         if (pageSize > 1000) pageSize = 1000;
@@ -868,38 +928,43 @@ public class SocketServerManager {
             }
             sql.append(')');
         }
+        // keys are unique per player, so the key alone orders the keyset and the UNIQUE index serves the seek
+        PageCursor after = PageCursor.decode(cursor, "player_advancements");
+        if (after != null) {
+            sql.append(" AND advancement_key > ?");
+        }
+        sql.append(" ORDER BY advancement_key");
 
         Map<String, Object> result = new HashMap<>();
-        try (Connection conn = plugin.getDatabaseManager().getConnection()) {
-            // count
-            StringBuilder countSql = new StringBuilder("SELECT COUNT(*) FROM player_advancements WHERE player_uuid = ?");
-            if (filters != null) {
-                countSql.append(" AND advancement_key IN (");
-                for (int i = 0; i < orderedFilters.size(); i++) {
-                    if (i > 0) {
-                        countSql.append(',');
-                    }
-                    countSql.append('?');
-                }
-                countSql.append(')');
+        result.put("next_cursor", null);
+        String lastKey = null;
+        try (Connection conn = plugin.getDatabaseManager().getReadConnection()) {
+            int offset = 0;
+            if (after == null) {
+                offset = (page - 1) * pageSize;
             }
-            try (PreparedStatement cps = conn.prepareStatement(countSql.toString())) {
-                int cidx = 1;
-                cps.setString(cidx++, playerUuid);
+            if (after == null && includeTotal) {
+                StringBuilder countWhere = new StringBuilder(" WHERE player_uuid = ?");
+                List<Object> countParams = new ArrayList<>();
+                countParams.add(playerUuid);
                 if (orderedFilters != null) {
-                    for (String key : orderedFilters) {
-                        cps.setString(cidx++, key);
+                    countWhere.append(" AND advancement_key IN (");
+                    for (int i = 0; i < orderedFilters.size(); i++) {
+                        if (i > 0) {
+                            countWhere.append(',');
+                        }
+                        countWhere.append('?');
                     }
+                    countWhere.append(')');
+                    countParams.addAll(orderedFilters);
                 }
-                try (ResultSet crs = cps.executeQuery()) {
-                    result.put("total", crs.next() ? crs.getLong(1) : 0L);
-                }
+                long total = plugin.getDatabaseManager().getTotalsCache()
+                        .count(conn, "player_advancements", countWhere.toString(), countParams);
+                result.put("total", total);
+                if (offset >= total) { offset = 0; page = 1; }
             }
-            long total = (long) result.get("total");
-            int offset = (page - 1) * pageSize;
-            if (offset >= total) { offset = 0; page = 1; }
 
-            sql.append(" LIMIT ? OFFSET ?");
+            sql.append(after == null ? " LIMIT ? OFFSET ?" : " LIMIT ?");
             try (PreparedStatement ps = conn.prepareStatement(sql.toString())) {
                 int idx = 1;
                 ps.setString(idx++, playerUuid);
@@ -908,11 +973,22 @@ public class SocketServerManager {
                         ps.setString(idx++, key);
                     }
                 }
-                ps.setInt(idx++, pageSize);
-                ps.setInt(idx, offset);
+                if (after != null) {
+                    ps.setString(idx++, after.getValue());
+                }
+                ps.setInt(idx++, pageSize + 1);
+                if (after == null) {
+                    ps.setInt(idx, offset);
+                }
                 try (ResultSet rs = ps.executeQuery()) {
+                    int read = 0;
                     while (rs.next()) {
+                        if (read++ == pageSize) {
+                            result.put("next_cursor", PageCursor.encode("player_advancements", 0L, lastKey));
+                            break;
+                        }
                         String key = rs.getString("advancement_key");
+                        lastKey = key;
                         if (filters != null && !filters.contains(key)) {
                             continue;
                         }
@@ -926,7 +1002,9 @@ public class SocketServerManager {
             }
         }
         result.put("records", records);
-        result.put("page", page);
+        if (after == null) {
+            result.put("page", page);
+        }
         result.put("page_size", pageSize);
         return result;
     }
@@ -934,7 +1012,9 @@ public class SocketServerManager {
     private Map<String, Object> loadStatsForPlayer(String playerUuid,
                                                    Set<String> filterKeys,
                                                    int page,
-                                                   int pageSize) throws SQLException {
+                                                   int pageSize,
+                                                   String cursor,
+                                                   boolean includeTotal) throws SQLException {
         if (page <= 0) page = 1;
         if (pageSize <= 0) pageSize = 100;
         if (pageSize > 1000) pageSize = 1000;
@@ -954,37 +1034,43 @@ public class SocketServerManager {
             }
             sql.append(')');
         }
+        // keys are unique per player, so the key alone orders the keyset and the UNIQUE index serves the seek
+        PageCursor after = PageCursor.decode(cursor, "player_stats");
+        if (after != null) {
+            sql.append(" AND stat_key > ?");
+        }
+        sql.append(" ORDER BY stat_key");
 
         Map<String, Object> result = new HashMap<>();
-        try (Connection conn = plugin.getDatabaseManager().getConnection()) {
-            StringBuilder countSql = new StringBuilder("SELECT COUNT(*) FROM player_stats WHERE player_uuid = ?");
-            if (filters != null) {
-                countSql.append(" AND stat_key IN (");
-                for (int i = 0; i < orderedFilters.size(); i++) {
-                    if (i > 0) {
-                        countSql.append(',');
-                    }
-                    countSql.append('?');
-                }
-                countSql.append(')');
+        result.put("next_cursor", null);
+        String lastKey = null;
+        try (Connection conn = plugin.getDatabaseManager().getReadConnection()) {
+            int offset = 0;
+            if (after == null) {
+                offset = (page - 1) * pageSize;
             }
-            try (PreparedStatement cps = conn.prepareStatement(countSql.toString())) {
-                int cidx = 1;
-                cps.setString(cidx++, playerUuid);
+            if (after == null && includeTotal) {
+                StringBuilder countWhere = new StringBuilder(" WHERE player_uuid = ?");
+                List<Object> countParams = new ArrayList<>();
+                countParams.add(playerUuid);
                 if (orderedFilters != null) {
-                    for (String key : orderedFilters) {
-                        cps.setString(cidx++, key);
+                    countWhere.append(" AND stat_key IN (");
+                    for (int i = 0; i < orderedFilters.size(); i++) {
+                        if (i > 0) {
+                            countWhere.append(',');
+                        }
+                        countWhere.append('?');
                     }
+                    countWhere.append(')');
+                    countParams.addAll(orderedFilters);
                 }
-                try (ResultSet crs = cps.executeQuery()) {
-                    result.put("total", crs.next() ? crs.getLong(1) : 0L);
-                }
+                long total = plugin.getDatabaseManager().getTotalsCache()
+                        .count(conn, "player_stats", countWhere.toString(), countParams);
+                result.put("total", total);
+                if (offset >= total) { offset = 0; page = 1; }
             }
-            long total = (long) result.get("total");
-            int offset = (page - 1) * pageSize;
-            if (offset >= total) { offset = 0; page = 1; }
 
-            sql.append(" LIMIT ? OFFSET ?");
+            sql.append(after == null ? " LIMIT ? OFFSET ?" : " LIMIT ?");
             try (PreparedStatement ps = conn.prepareStatement(sql.toString())) {
                 int idx = 1;
                 ps.setString(idx++, playerUuid);
@@ -993,11 +1079,22 @@ public class SocketServerManager {
                         ps.setString(idx++, key);
                     }
                 }
-                ps.setInt(idx++, pageSize);
-                ps.setInt(idx, offset);
+                if (after != null) {
+                    ps.setString(idx++, after.getValue());
+                }
+                ps.setInt(idx++, pageSize + 1);
+                if (after == null) {
+                    ps.setInt(idx, offset);
+                }
                 try (ResultSet rs = ps.executeQuery()) {
+                    int read = 0;
                     while (rs.next()) {
+                        if (read++ == pageSize) {
+                            result.put("next_cursor", PageCursor.encode("player_stats", 0L, lastKey));
+                            break;
+                        }
                         String key = rs.getString("stat_key");
+                        lastKey = key;
                         if (filters != null && !filters.contains(key)) {
                             continue;
                         }
@@ -1008,56 +1105,10 @@ public class SocketServerManager {
             }
         }
         result.put("records", records);
-        result.put("page", page);
-        result.put("page_size", pageSize);
-        return result;
-    }
-
-    private List<Map<String, Object>> collectOnlinePlayers() {
-        List<Map<String, Object>> result = new ArrayList<>();
-        for (Player player : Bukkit.getOnlinePlayers()) {
-            Map<String, Object> item = new HashMap<>();
-            item.put("uuid", player.getUniqueId().toString());
-            item.put("name", player.getName());
-            item.put("health", player.getHealth());
-            item.put("max_health", player.getMaxHealth());
-            GameMode gameMode = player.getGameMode();
-            item.put("game_mode", gameMode != null ? gameMode.name() : null);
-            World world = player.getWorld();
-            item.put("world", world != null ? world.getName() : null);
-            result.add(item);
+        if (after == null) {
+            result.put("page", page);
         }
-        return result;
-    }
-
-    private Map<String, Object> collectServerTime() {
-        Map<String, Object> result = new HashMap<>();
-        World world = null;
-        for (World w : Bukkit.getWorlds()) {
-            world = w;
-            break;
-        }
-        if (world == null) {
-            result.put("world", null);
-            result.put("time", null);
-            result.put("full_time", null);
-            result.put("do_daylight_cycle", null);
-            return result;
-        }
-        result.put("world", world.getName());
-        result.put("time", world.getTime());
-        result.put("full_time", world.getFullTime());
-        String gamerule = world.getGameRuleValue("doDaylightCycle");
-        result.put("do_daylight_cycle", gamerule);
-        return result;
-    }
-
-    private Map<String, Object> collectServerBasics() {
-        Map<String, Object> result = new HashMap<>();
-        int maxPlayers = Bukkit.getMaxPlayers();
-        int online = Bukkit.getOnlinePlayers().size();
-        result.put("server_max_players", maxPlayers);
-        result.put("online_player_count", online);
+        result.put("page_size", pageSize);
         return result;
     }
 
@@ -1071,7 +1122,9 @@ public class SocketServerManager {
                                             int page,
                                             int pageSize,
                                             String order,
-                                            String orderColumn) throws SQLException {
+                                            String orderColumn,
+                                            String cursor,
+                                            boolean includeTotal) throws SQLException {
         if (page <= 0) page = 1;
         if (pageSize <= 0) pageSize = 50;
         if (pageSize > 500) pageSize = 500; // hard cap
@@ -1097,85 +1150,152 @@ public class SocketServerManager {
         if (changeType != null && !changeType.isEmpty()) {
             where.append(" AND change_type = ?"); params.add(changeType);
         }
+        // Dates are server-local days, matched against the epoch-millis column so the range uses an index
         if (singleDate != null && !singleDate.isEmpty()) {
-            // Timestamp assumed ISO prefix; use LIKE 'YYYY-MM-DD%'
-            where.append(" AND timestamp LIKE ?"); params.add(singleDate + "%");
+            long[] r = computeDayRange(singleDate);
+            where.append(" AND timestamp_ms >= ? AND timestamp_ms <= ?"); params.add(r[0]); params.add(r[1]);
         } else {
             if (startDate != null && !startDate.isEmpty()) {
-                where.append(" AND timestamp >= ?"); params.add(startDate);
+                where.append(" AND timestamp_ms >= ?"); params.add(computeRange(startDate, null)[0]);
             }
             if (endDate != null && !endDate.isEmpty()) {
-                where.append(" AND timestamp <= ?"); params.add(endDate);
+                where.append(" AND timestamp_ms <= ?"); params.add(computeRange(null, endDate)[1]);
             }
         }
 
+        String cursorScope = "mtr_logs:" + orderByColumn + ":" + orderClause;
+        PageCursor after = PageCursor.decode(cursor, cursorScope);
+        StringBuilder pageWhere = new StringBuilder(where);
+        List<Object> pageParams = new ArrayList<>(params);
+        if (after != null) {
+            appendKeyset(pageWhere, pageParams, orderByColumn, "id", "DESC".equals(orderClause), after,
+                    after.getLongValue());
+        }
+
         Map<String, Object> result = new HashMap<>();
-        try (Connection conn = plugin.getDatabaseManager().getConnection()) {
-            // count
-            try (PreparedStatement cps = conn.prepareStatement("SELECT COUNT(*) FROM mtr_logs" + where)) {
-                for (int i = 0; i < params.size(); i++) {
-                    cps.setObject(i + 1, params.get(i));
-                }
-                try (ResultSet crs = cps.executeQuery()) {
-                    if (crs.next()) {
-                        result.put("total", crs.getLong(1));
-                    } else {
-                        result.put("total", 0L);
-                    }
+        try (Connection conn = plugin.getDatabaseManager().getReadConnection()) {
+            int offset = 0;
+            if (after == null) {
+                offset = (page - 1) * pageSize;
+            }
+            if (after == null && includeTotal) {
+                long total = plugin.getDatabaseManager().getTotalsCache()
+                        .count(conn, "mtr_logs", params.isEmpty() ? "" : where.toString(), params);
+                result.put("total", total);
+                if (offset >= total) {
+                    offset = 0; // reset if out of range to still return first page
+                    page = 1;
                 }
             }
-            long total = (long) result.get("total");
-            int offset = (page - 1) * pageSize;
-            if (offset >= total) {
-                offset = 0; // reset if out of range to still return first page
-                page = 1;
+            String orderBy = " ORDER BY " + orderByColumn + " " + orderClause +
+                    ("id".equals(orderByColumn) ? "" : ", id " + orderClause);
+            List<Map<String, Object>> records = new ArrayList<>();
+            queryMtrLogs(conn, pageWhere, pageParams, orderBy, pageSize + 1, after == null ? offset : -1, records);
+            if (after != null && after.getValue() != null && "timestamp_ms".equals(orderByColumn)
+                    && "DESC".equals(orderClause) && records.size() <= pageSize) {
+                // NULL timestamps sort last descending; the seek above stops before them so it can stay on the index
+                StringBuilder nullWhere = new StringBuilder(where).append(" AND timestamp_ms IS NULL");
+                queryMtrLogs(conn, nullWhere, params, " ORDER BY id DESC", pageSize + 1 - records.size(), -1, records);
             }
-                String sql = "SELECT id, timestamp, player_name, player_uuid, class_name, entry_id, entry_name, position, change_type, old_data, new_data, source_file_path, source_line, dimension_context " +
-                    "FROM mtr_logs" + where + " ORDER BY " + orderByColumn + " " + orderClause + " LIMIT ? OFFSET ?";
-            try (PreparedStatement ps = conn.prepareStatement(sql)) {
-                int idx = 1;
-                for (Object p : params) {
-                    ps.setObject(idx++, p);
-                }
-                ps.setInt(idx++, pageSize);
-                ps.setInt(idx, offset);
-                List<Map<String, Object>> records = new ArrayList<>();
-                try (ResultSet rs = ps.executeQuery()) {
-                    while (rs.next()) {
-                        Map<String, Object> row = new HashMap<>();
-                        row.put("id", rs.getLong("id"));
-                        row.put("timestamp", rs.getString("timestamp"));
-                        row.put("player_name", rs.getString("player_name"));
-                        row.put("player_uuid", rs.getString("player_uuid"));
-                        row.put("class_name", rs.getString("class_name"));
-                        row.put("entry_id", rs.getString("entry_id"));
-                        row.put("entry_name", rs.getString("entry_name"));
-                        row.put("position", rs.getString("position"));
-                        row.put("change_type", rs.getString("change_type"));
-                        row.put("old_data", rs.getString("old_data"));
-                        row.put("new_data", rs.getString("new_data"));
-                        row.put("source_file_path", rs.getString("source_file_path"));
-                        row.put("source_line", rs.getInt("source_line"));
-                        row.put("dimension_context", rs.getString("dimension_context"));
-                        records.add(row);
-                    }
-                }
-                result.put("records", records);
+            result.put("next_cursor", null);
+            if (records.size() > pageSize) {
+                records.remove(pageSize);
+                Map<String, Object> last = records.get(pageSize - 1);
+                result.put("next_cursor", PageCursor.encode(cursorScope, (Long) last.get("id"), last.get(orderByColumn)));
             }
+            result.put("records", records);
+        }
+        if (after == null) {
+            result.put("page", page);
         }
-        result.put("page", page);
         result.put("page_size", pageSize);
         return result;
     }
 
+    /**
+     * Append up to {@code limit} rows to {@code records}; a negative {@code offset} omits the OFFSET clause.
+     */
+    private void queryMtrLogs(Connection conn,
+                              CharSequence where,
+                              List<Object> params,
+                              String orderBy,
+                              int limit,
+                              int offset,
+                              List<Map<String, Object>> records) throws SQLException {
+        String sql = "SELECT id, timestamp, timestamp_ms, player_name, player_uuid, class_name, entry_id, entry_name, position, change_type, old_data, new_data, source_file_path, source_line, dimension_context " +
+                "FROM mtr_logs" + where + orderBy + (offset >= 0 ? " LIMIT ? OFFSET ?" : " LIMIT ?");
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            int idx = 1;
+            for (Object p : params) {
+                ps.setObject(idx++, p);
+            }
+            ps.setInt(idx++, limit);
+            if (offset >= 0) {
+                ps.setInt(idx, offset);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Map<String, Object> row = new HashMap<>();
+                    row.put("id", rs.getLong("id"));
+                    row.put("timestamp", rs.getString("timestamp"));
+                    row.put("timestamp_ms", getNullableLong(rs, "timestamp_ms"));
+                    row.put("player_name", rs.getString("player_name"));
+                    row.put("player_uuid", rs.getString("player_uuid"));
+                    row.put("class_name", rs.getString("class_name"));
+                    row.put("entry_id", rs.getString("entry_id"));
+                    row.put("entry_name", rs.getString("entry_name"));
+                    row.put("position", rs.getString("position"));
+                    row.put("change_type", rs.getString("change_type"));
+                    row.put("old_data", rs.getString("old_data"));
+                    row.put("new_data", rs.getString("new_data"));
+                    row.put("source_file_path", rs.getString("source_file_path"));
+                    row.put("source_line", rs.getInt("source_line"));
+                    row.put("dimension_context", rs.getString("dimension_context"));
+                    records.add(row);
+                }
+            }
+        }
+    }
+
+    /**
+     * Append the keyset condition for the page after {@code after} in {@code ORDER BY column dir, idColumn dir}.
+     * SQLite sorts NULLs first ascending and last descending. Descending, the condition only covers the non-NULL
+     * rows (a trailing {@code OR column IS NULL} would turn the index seek into a scan); callers page into the
+     * NULL tail separately.
+     */
+    private static void appendKeyset(StringBuilder where,
+                                     List<Object> params,
+                                     String column,
+                                     String idColumn,
+                                     boolean descending,
+                                     PageCursor after,
+                                     Object value) {
+        String cmp = descending ? "<" : ">";
+        if (column.equals(idColumn)) {
+            where.append(" AND ").append(idColumn).append(' ').append(cmp).append(" ?");
+            params.add(after.getId());
+            return;
+        }
+        if (value == null) {
+            where.append(descending
+                    ? " AND (" + column + " IS NULL AND " + idColumn + " < ?)"
+                    : " AND ((" + column + " IS NULL AND " + idColumn + " > ?) OR " + column + " IS NOT NULL)");
+            params.add(after.getId());
+            return;
+        }
+        where.append(" AND (").append(column).append(", ").append(idColumn).append(") ").append(cmp).append(" (?, ?)");
+        params.add(value);
+        params.add(after.getId());
+    }
+
     private String normalizeOrderColumn(String orderColumn) {
         if (orderColumn == null || orderColumn.isEmpty()) {
-            return "timestamp"; // default to timestamp
+            return "timestamp_ms"; // default to timestamp
         }
         String c = orderColumn.toLowerCase();
         switch (c) {
             case "timestamp":
-                return "timestamp";
+                return "timestamp_ms";
             case "id":
                 return "id";
             default:
@@ -1191,7 +1311,9 @@ public class SocketServerManager {
                                                    Long startAt,
                                                    Long endAt,
                                                    int page,
-                                                   int pageSize) throws SQLException {
+                                                   int pageSize,
+                                                   String cursor,
+                                                   boolean includeTotal) throws SQLException {
         if (page <= 0) page = 1;
         if (pageSize <= 0) pageSize = 50;
         if (pageSize > 500) pageSize = 500;
@@ -1234,27 +1356,43 @@ public class SocketServerManager {
         if (rangeStart != null) { where.append(" AND occurred_at >= ?"); params.add(rangeStart); }
         if (rangeEnd != null)   { where.append(" AND occurred_at <= ?"); params.add(rangeEnd); }
 
+        PageCursor after = PageCursor.decode(cursor, "player_sessions");
+        StringBuilder pageWhere = new StringBuilder(where);
+        List<Object> pageParams = new ArrayList<>(params);
+        if (after != null) {
+            appendKeyset(pageWhere, pageParams, "occurred_at", "id", true, after, after.getLongValue());
+        }
+
         Map<String, Object> result = new HashMap<>();
-        try (Connection conn = plugin.getDatabaseManager().getConnection()) {
-            try (PreparedStatement cps = conn.prepareStatement("SELECT COUNT(*) FROM player_sessions" + where)) {
-                for (int i = 0; i < params.size(); i++) cps.setObject(i + 1, params.get(i));
-                try (ResultSet crs = cps.executeQuery()) {
-                    result.put("total", crs.next() ? crs.getLong(1) : 0L);
-                }
+        try (Connection conn = plugin.getDatabaseManager().getReadConnection()) {
+            int offset = 0;
+            if (after == null) {
+                offset = (page - 1) * pageSize;
+            }
+            if (after == null && includeTotal) {
+                long total = plugin.getDatabaseManager().getTotalsCache()
+                        .count(conn, "player_sessions", params.isEmpty() ? "" : where.toString(), params);
+                result.put("total", total);
+                if (offset >= total) { offset = 0; page = 1; }
             }
-            long total = (long) result.get("total");
-            int offset = (page - 1) * pageSize;
-            if (offset >= total) { offset = 0; page = 1; }
             String sql = "SELECT id, event_type, occurred_at, player_uuid, player_name, player_ip, world_name, dimension_key, x, y, z " +
-                    "FROM player_sessions" + where + " ORDER BY id DESC LIMIT ? OFFSET ?";
+                    "FROM player_sessions" + pageWhere + " ORDER BY occurred_at DESC, id DESC" +
+                    (after == null ? " LIMIT ? OFFSET ?" : " LIMIT ?");
             try (PreparedStatement ps = conn.prepareStatement(sql)) {
                 int idx = 1;
-                for (Object p : params) ps.setObject(idx++, p);
-                ps.setInt(idx++, pageSize);
-                ps.setInt(idx, offset);
+                for (Object p : pageParams) ps.setObject(idx++, p);
+                ps.setInt(idx++, pageSize + 1);
+                if (after == null) ps.setInt(idx, offset);
                 List<Map<String, Object>> records = new ArrayList<>();
+                result.put("next_cursor", null);
                 try (ResultSet rs = ps.executeQuery()) {
                     while (rs.next()) {
+                        if (records.size() == pageSize) {
+                            Map<String, Object> last = records.get(records.size() - 1);
+                            result.put("next_cursor", PageCursor.encode("player_sessions", (Long) last.get("id"),
+                                    last.get("occurred_at")));
+                            break;
+                        }
                         Map<String, Object> row = new HashMap<>();
                         row.put("id", rs.getLong("id"));
                         row.put("event_type", rs.getString("event_type"));
@@ -1273,14 +1411,16 @@ public class SocketServerManager {
                 result.put("records", records);
             }
         }
-        result.put("page", page);
+        if (after == null) {
+            result.put("page", page);
+        }
         result.put("page_size", pageSize);
         return result;
     }
 
     private long[] computeDayRange(String date) {
         // date: YYYY-MM-DD
-        java.time.LocalDate d = java.time.LocalDate.parse(date);
+        java.time.LocalDate d = parseLocalDate(date);
         java.time.ZoneId zone = java.time.ZoneId.systemDefault();
         long start = d.atStartOfDay(zone).toInstant().toEpochMilli();
         long end = d.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli() - 1;
@@ -1292,20 +1432,28 @@ public class SocketServerManager {
         Long start = null;
         Long end = null;
         if (startDate != null && !startDate.isEmpty()) {
-            java.time.LocalDate d = java.time.LocalDate.parse(startDate);
+            java.time.LocalDate d = parseLocalDate(startDate);
             start = d.atStartOfDay(zone).toInstant().toEpochMilli();
         }
         if (endDate != null && !endDate.isEmpty()) {
-            java.time.LocalDate d = java.time.LocalDate.parse(endDate);
+            java.time.LocalDate d = parseLocalDate(endDate);
             end = d.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli() - 1;
         }
         return new long[]{start != null ? start : Long.MIN_VALUE, end != null ? end : Long.MAX_VALUE};
     }
 
+    private java.time.LocalDate parseLocalDate(String date) {
+        try {
+            return java.time.LocalDate.parse(date);
+        } catch (java.time.format.DateTimeParseException e) {
+            throw new IllegalArgumentException("date must be YYYY-MM-DD: " + date);
+        }
+    }
+
     private Map<String, Object> loadMtrLogById(long id) throws SQLException {
-        try (Connection conn = plugin.getDatabaseManager().getConnection();
+        try (Connection conn = plugin.getDatabaseManager().getReadConnection();
              PreparedStatement ps = conn.prepareStatement(
-                     "SELECT id, timestamp, player_name, player_uuid, class_name, entry_id, entry_name, position, change_type, old_data, new_data, source_file_path, source_line, dimension_context " +
+                     "SELECT id, timestamp, timestamp_ms, player_name, player_uuid, class_name, entry_id, entry_name, position, change_type, old_data, new_data, source_file_path, source_line, dimension_context " +
                              "FROM mtr_logs WHERE id = ?")) {
             ps.setLong(1, id);
             try (ResultSet rs = ps.executeQuery()) {
@@ -1313,6 +1461,7 @@ public class SocketServerManager {
                 Map<String, Object> row = new HashMap<>();
                 row.put("id", rs.getLong("id"));
                 row.put("timestamp", rs.getString("timestamp"));
+                row.put("timestamp_ms", getNullableLong(rs, "timestamp_ms"));
                 row.put("player_name", rs.getString("player_name"));
                 row.put("player_uuid", rs.getString("player_uuid"));
                 row.put("class_name", rs.getString("class_name"));
@@ -1331,24 +1480,14 @@ public class SocketServerManager {
     }
 
     private Map<String, Long> loadDataTotals() throws SQLException {
-        Map<String, Long> totals = new HashMap<>();
-        try (Connection conn = plugin.getDatabaseManager().getConnection()) {
-            try (PreparedStatement ps = conn.prepareStatement("SELECT COUNT(*) FROM mtr_logs")) {
-                try (ResultSet rs = ps.executeQuery()) {
-                    totals.put("mtr_logs_total", rs.next() ? rs.getLong(1) : 0L);
-                }
-            }
-            try (PreparedStatement ps = conn.prepareStatement("SELECT COUNT(*) FROM player_stats")) {
-                try (ResultSet rs = ps.executeQuery()) {
-                    totals.put("stats_total", rs.next() ? rs.getLong(1) : 0L);
-                }
-            }
-            try (PreparedStatement ps = conn.prepareStatement("SELECT COUNT(*) FROM player_advancements")) {
-                try (ResultSet rs = ps.executeQuery()) {
-                    totals.put("advancements_total", rs.next() ? rs.getLong(1) : 0L);
-                }
-            }
+        Map<String, Long> counts;
+        try (Connection conn = plugin.getDatabaseManager().getReadConnection()) {
+            counts = plugin.getDatabaseManager().getTotalsCache().rowCounts(conn);
         }
+        Map<String, Long> totals = new HashMap<>();
+        totals.put("mtr_logs_total", counts.getOrDefault("mtr_logs", 0L));
+        totals.put("stats_total", counts.getOrDefault("player_stats", 0L));
+        totals.put("advancements_total", counts.getOrDefault("player_advancements", 0L));
         return totals;
     }
 
@@ -1413,7 +1552,7 @@ public class SocketServerManager {
         }
 
         Map<String, Map<String, Long>> result = new HashMap<>();
-        try (Connection conn = plugin.getDatabaseManager().getConnection();
+        try (Connection conn = plugin.getDatabaseManager().getReadConnection();
              PreparedStatement ps = conn.prepareStatement(sql.toString())) {
             int idx = 1;
             if (orderedPlayers != null) {
@@ -1465,7 +1604,7 @@ public class SocketServerManager {
         }
 
         Map<String, Map<String, String>> result = new HashMap<>();
-        try (Connection conn = plugin.getDatabaseManager().getConnection();
+        try (Connection conn = plugin.getDatabaseManager().getReadConnection();
              PreparedStatement ps = conn.prepareStatement(sql.toString())) {
             int idx = 1;
             if (orderedPlayers != null) {
@@ -1491,40 +1630,66 @@ public class SocketServerManager {
         return result;
     }
 
-    private Map<String, Object> loadPlayerIdentities(Integer pageParam, Integer pageSizeParam) throws SQLException {
+    private Map<String, Object> loadPlayerIdentities(Integer pageParam,
+                                                     Integer pageSizeParam,
+                                                     String cursor,
+                                                     boolean includeTotal) throws SQLException {
         int page = pageParam != null ? pageParam : 1;
         int pageSize = pageSizeParam != null ? pageSizeParam : 100;
         if (page <= 0) page = 1;
         if (pageSize <= 0) pageSize = 100;
         if (pageSize > 1000) pageSize = 1000;
 
+        // player_identities is keyed by uuid; its rowid breaks last_updated ties and is part of the index
+        PageCursor after = PageCursor.decode(cursor, "player_identities");
+        StringBuilder where = new StringBuilder();
+        List<Object> params = new ArrayList<>();
+        if (after != null) {
+            where.append(" WHERE 1=1");
+            appendKeyset(where, params, "last_updated", "rowid", true, after, after.getLongValue());
+        }
+
         Map<String, Object> result = new HashMap<>();
         List<Map<String, Object>> records = new ArrayList<>();
-        try (Connection conn = plugin.getDatabaseManager().getConnection()) {
-            try (PreparedStatement cps = conn.prepareStatement("SELECT COUNT(*) FROM player_identities")) {
-                try (ResultSet rs = cps.executeQuery()) {
-                    result.put("total", rs.next() ? rs.getLong(1) : 0L);
-                }
+        result.put("next_cursor", null);
+        try (Connection conn = plugin.getDatabaseManager().getReadConnection()) {
+            int offset = 0;
+            if (after == null) {
+                offset = (page - 1) * pageSize;
             }
-            long total = (long) result.get("total");
-            int offset = (page - 1) * pageSize;
-            if (offset >= total) {
-                offset = 0;
-                page = 1;
+            if (after == null && includeTotal) {
+                long total = plugin.getDatabaseManager().getTotalsCache().rowCount(conn, "player_identities");
+                result.put("total", total);
+                if (offset >= total) {
+                    offset = 0;
+                    page = 1;
+                }
             }
             try (PreparedStatement ps = conn.prepareStatement(
-                    "SELECT player_uuid, player_name, first_played, last_played, last_updated FROM player_identities ORDER BY last_updated DESC LIMIT ? OFFSET ?")) {
-                ps.setInt(1, pageSize);
-                ps.setInt(2, offset);
+                    "SELECT rowid, player_uuid, player_name, first_played, last_played, last_updated FROM player_identities" + where +
+                            " ORDER BY last_updated DESC, rowid DESC" + (after == null ? " LIMIT ? OFFSET ?" : " LIMIT ?"))) {
+                int idx = 1;
+                for (Object p : params) ps.setObject(idx++, p);
+                ps.setInt(idx++, pageSize + 1);
+                if (after == null) ps.setInt(idx, offset);
+                long lastRowId = 0L;
                 try (ResultSet rs = ps.executeQuery()) {
                     while (rs.next()) {
+                        if (records.size() == pageSize) {
+                            result.put("next_cursor", PageCursor.encode("player_identities", lastRowId,
+                                    records.get(records.size() - 1).get("last_updated")));
+                            break;
+                        }
+                        lastRowId = rs.getLong("rowid");
                         records.add(mapIdentityRow(rs));
                     }
                 }
             }
         }
         result.put("records", records);
-        result.put("page", page);
+        if (after == null) {
+            result.put("page", page);
+        }
         result.put("page_size", pageSize);
         return result;
     }
@@ -1536,7 +1701,7 @@ public class SocketServerManager {
     }
 
     private String resolveUuidByName(String playerName) throws SQLException {
-        try (Connection conn = plugin.getDatabaseManager().getConnection();
+        try (Connection conn = plugin.getDatabaseManager().getReadConnection();
              PreparedStatement ps = conn.prepareStatement(
                      "SELECT player_uuid FROM player_identities WHERE player_name = ? ORDER BY last_updated DESC LIMIT 1")) {
             ps.setString(1, playerName);
@@ -1549,7 +1714,7 @@ public class SocketServerManager {
 
     private Map<String, Object> loadIdentityByUuid(String playerUuid) throws SQLException {
         if (playerUuid == null || playerUuid.isEmpty()) return null;
-        try (Connection conn = plugin.getDatabaseManager().getConnection();
+        try (Connection conn = plugin.getDatabaseManager().getReadConnection();
              PreparedStatement ps = conn.prepareStatement(
                      "SELECT player_uuid, player_name, first_played, last_played, last_updated FROM player_identities WHERE player_uuid = ?")) {
             ps.setString(1, playerUuid);
@@ -1564,7 +1729,7 @@ public class SocketServerManager {
 
     private Map<String, Object> loadIdentityByName(String playerName) throws SQLException {
         if (playerName == null || playerName.isEmpty()) return null;
-        try (Connection conn = plugin.getDatabaseManager().getConnection();
+        try (Connection conn = plugin.getDatabaseManager().getReadConnection();
              PreparedStatement ps = conn.prepareStatement(
                      "SELECT player_uuid, player_name, first_played, last_played, last_updated FROM player_identities WHERE player_name = ? ORDER BY last_updated DESC LIMIT 1")) {
             ps.setString(1, playerName);
@@ -1594,50 +1759,115 @@ public class SocketServerManager {
         return rs.wasNull() ? null : value;
     }
 
-    private String getPlayerNbtJsonCached(String playerUuid) throws Exception {
+    private String getPlayerNbtJsonCached(String playerUuid,
+                                          NbtUtils.ArrayEncoding arrayEncoding,
+                                          NbtProjection projection) throws Exception {
         long now = System.currentTimeMillis();
         long ttlMillis = plugin.getConfigManager().getCurrentConfig().getNbtCacheTtlMinutes() * 60_000L;
-        try (Connection conn = plugin.getDatabaseManager().getConnection()) {
-            try (PreparedStatement ps = conn.prepareStatement(
-                    "SELECT raw_json, cached_at FROM player_nbt_cache WHERE player_uuid = ?")) {
-                ps.setString(1, playerUuid);
-                try (ResultSet rs = ps.executeQuery()) {
-                    if (rs.next()) {
-                        String json = rs.getString(1);
-                        long cachedAt = rs.getLong(2);
-                        if (cachedAt + ttlMillis > now) {
-                            return json;
-                        }
-                    }
-                }
+        PlayerNbtMemoryCache memoryCache = plugin.getDatabaseManager().getPlayerNbtMemoryCache();
+        PlayerNbtMemoryCache.Entry cached = memoryCache.get(playerUuid, now);
+        if (cached == null) {
+            cached = loadPlayerNbtCacheRow(playerUuid);
+            if (cached != null && cached.getCachedAt() + ttlMillis > now) {
+                memoryCache.put(playerUuid, cached);
             }
-            // Not cached or expired -> try to load from playerdata
-            java.io.File dat = findPlayerDatFile(playerUuid);
-            if (dat == null || !dat.isFile()) return null;
-            Map<String, Object> map;
-            try (java.io.FileInputStream in = new java.io.FileInputStream(dat)) {
-                map = com.hydroline.beacon.util.NbtUtils.readPlayerDatToMap(in);
+        }
+        String cachedHash = cached != null ? cached.getContentHash() : null;
+        PlayerNbtCacheFormat cachedFormat = cached != null ? cached.getFormat() : null;
+        if (cached != null && cached.getCachedAt() + ttlMillis > now) {
+            // JSON is decoded only here, on the request path
+            String json = cachedFormat.decode(cached.getPayload(), arrayEncoding, projection);
+            if (json != null) {
+                return json;
             }
-            String json = com.hydroline.beacon.util.NbtUtils.toJson(map);
+        }
+        // Not cached, expired, or cached in a format that cannot give this encoding/projection -> load from playerdata
+        java.io.File dat = findPlayerDatFile(playerUuid);
+        if (dat == null || !dat.isFile()) return null;
+        byte[] gzippedNbt = java.nio.file.Files.readAllBytes(dat.toPath());
+        Map<String, Object> identityFields = new HashMap<>();
+        String json = NbtUtils.readPlayerDatToJson(new java.io.ByteArrayInputStream(gzippedNbt), arrayEncoding,
+                projection, NBT_IDENTITY_PATHS, identityFields);
+
+        PlayerNbtCacheFormat format = plugin.getConfigManager().getCurrentConfig().getNbtCacheFormat();
+        String contentHash = PlayerNbtCacheFormat.contentHash(gzippedNbt);
+        if (contentHash.equals(cachedHash) && format == cachedFormat) {
+            // Same file as cached: keep the payload and identity as they are, only extend the TTL
+            memoryCache.put(playerUuid, new PlayerNbtMemoryCache.Entry(format, cached.getPayload(), contentHash, now));
+            plugin.getDatabaseManager().submitWrite(conn -> {
+                try (PreparedStatement touch = conn.prepareStatement(
+                        "UPDATE player_nbt_cache SET cached_at = ? WHERE player_uuid = ? AND content_hash = ?")) {
+                    touch.setLong(1, now);
+                    touch.setString(2, playerUuid);
+                    touch.setString(3, contentHash);
+                    touch.executeUpdate();
+                }
+                return null;
+            }).exceptionally(e -> {
+                plugin.getLogger().warning("Failed to refresh NBT cache for " + playerUuid + ": " + e.getMessage());
+                return null;
+            });
+            return json;
+        }
+        byte[] payload = format.encode(gzippedNbt,
+                arrayEncoding == NbtUtils.ArrayEncoding.LIST && projection == null ? json : null);
+        memoryCache.put(playerUuid, new PlayerNbtMemoryCache.Entry(format, payload, contentHash, now));
+
+        // opportunistically upsert identity if missing name
+        String lastKnownName = null;
+        Long firstPlayed = null;
+        Long lastPlayed = null;
+        Object lkn = identityFields.get("bukkit.lastKnownName");
+        if (lkn instanceof String) {
+            lastKnownName = (String) lkn;
+            firstPlayed = extractIdentityLong(identityFields, "firstPlayed");
+            lastPlayed = extractIdentityLong(identityFields, "lastPlayed");
+        }
+        String name = lastKnownName;
+        Long first = firstPlayed;
+        Long last = lastPlayed;
+        // The response does not depend on the cache write, so it is queued without waiting for the commit
+        plugin.getDatabaseManager().submitWrite(conn -> {
             try (PreparedStatement ups = conn.prepareStatement(
-                    "INSERT INTO player_nbt_cache (player_uuid, raw_json, cached_at) VALUES (?, ?, ?) " +
-                            "ON CONFLICT(player_uuid) DO UPDATE SET raw_json=excluded.raw_json, cached_at=excluded.cached_at")) {
+                    "INSERT INTO player_nbt_cache (player_uuid, format, payload, content_hash, cached_at) VALUES (?, ?, ?, ?, ?) " +
+                            "ON CONFLICT(player_uuid) DO UPDATE SET format=excluded.format, payload=excluded.payload, " +
+                            "content_hash=excluded.content_hash, cached_at=excluded.cached_at")) {
                 ups.setString(1, playerUuid);
-                ups.setString(2, json);
-                ups.setLong(3, now);
+                ups.setString(2, format.getConfigName());
+                ups.setBytes(3, payload);
+                ups.setString(4, contentHash);
+                ups.setLong(5, now);
                 ups.executeUpdate();
             }
-            // opportunistically upsert identity if missing name
-            Object bukkit = map.get("bukkit");
-            if (bukkit instanceof Map) {
-                Object lkn = ((Map<?, ?>) bukkit).get("lastKnownName");
-                if (lkn instanceof String) {
-                    Long firstPlayed = extractLongFromIdentityMap(map, "firstPlayed", (Map<?, ?>) bukkit);
-                    Long lastPlayed = extractLongFromIdentityMap(map, "lastPlayed", (Map<?, ?>) bukkit);
-                    upsertIdentityRow(conn, playerUuid, (String) lkn, firstPlayed, lastPlayed, now);
+            if (name != null) {
+                upsertIdentityRow(conn, playerUuid, name, first, last, now);
+            }
+            return null;
+        }).exceptionally(e -> {
+            plugin.getLogger().warning("Failed to refresh NBT cache for " + playerUuid + ": " + e.getMessage());
+            return null;
+        });
+        return json;
+    }
+
+    /**
+     * @return the stored cache row, or null when there is none or its format is unknown
+     */
+    private PlayerNbtMemoryCache.Entry loadPlayerNbtCacheRow(String playerUuid) throws SQLException {
+        try (Connection conn = plugin.getDatabaseManager().getReadConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "SELECT format, payload, content_hash, cached_at FROM player_nbt_cache WHERE player_uuid = ?")) {
+            ps.setString(1, playerUuid);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                PlayerNbtCacheFormat format = PlayerNbtCacheFormat.fromConfigName(rs.getString(1));
+                if (format == null) {
+                    return null;
                 }
+                return new PlayerNbtMemoryCache.Entry(format, rs.getBytes(2), rs.getString(3), rs.getLong(4));
             }
-            return json;
         }
     }
 
@@ -1671,15 +1901,12 @@ public class SocketServerManager {
         }
     }
 
-    private Long extractLongFromIdentityMap(Map<String, Object> root, String key, Map<?, ?> bukkitSection) {
-        Long value = asLong(root.get(key));
+    private Long extractIdentityLong(Map<String, Object> identityFields, String key) {
+        Long value = asLong(identityFields.get(key));
         if (value != null) {
             return value;
         }
-        if (bukkitSection != null) {
-            return asLong(bukkitSection.get(key));
-        }
-        return null;
+        return asLong(identityFields.get("bukkit." + key));
     }
 
     private Long asLong(Object value) {
@@ -1714,6 +1941,12 @@ public class SocketServerManager {
         if (!(lower.startsWith("select") || lower.startsWith("pragma"))) {
             throw new IllegalArgumentException("Only SELECT or PRAGMA statements are allowed");
         }
+        // the statement runs on a pooled reader: an assigning PRAGMA (query_only=0, busy_timeout=...) would
+        // outlive this request, so only the bare query form is accepted; use pragma_xxx(...) in a SELECT for
+        // the ones that take an argument
+        if (lower.startsWith("pragma") && (trimmed.indexOf('=') >= 0 || trimmed.indexOf('(') >= 0)) {
+            throw new IllegalArgumentException("PRAGMA statements may not assign or take arguments");
+        }
 
         int limit = maxRows != null ? maxRows : 200;
         if (limit <= 0) limit = 1;
@@ -1724,7 +1957,7 @@ public class SocketServerManager {
         List<Map<String, Object>> rows = new ArrayList<>();
         boolean truncated = false;
 
-        try (Connection conn = plugin.getDatabaseManager().getConnection();
+        try (Connection conn = plugin.getDatabaseManager().getReadConnection();
              PreparedStatement ps = conn.prepareStatement(trimmed)) {
             ps.setMaxRows(limit + 1); // fetch one extra row to signal truncation
             boolean hasResult = ps.execute();
@@ -1764,7 +1997,7 @@ public class SocketServerManager {
     private List<String> resolveNamesForUuids(Set<String> uuids) throws SQLException {
         List<String> names = new ArrayList<>();
         if (uuids == null) return names;
-        try (Connection conn = plugin.getDatabaseManager().getConnection();
+        try (Connection conn = plugin.getDatabaseManager().getReadConnection();
              PreparedStatement ps = conn.prepareStatement(
                      "SELECT player_name FROM player_identities WHERE player_uuid = ? ORDER BY last_updated DESC LIMIT 1")) {
             for (String uuid : uuids) {
@@ -1823,6 +2056,10 @@ public class SocketServerManager {
         private List<String> keys; // optional filter
         private Integer page;      // optional, for paginated queries
         private Integer pageSize;  // optional, for paginated queries
+        private String cursor;     // optional, next_cursor of the previous page
+        private Boolean includeTotal; // optional, false skips the total count
+        private String arrayEncoding; // optional, get_player_nbt: list | base64 | hex
+        private List<String> paths; // optional, get_player_nbt: NBT paths to return, e.g. Inventory[*].id
 
         public PlayerIdentityRequest() {
         }
@@ -1852,12 +2089,22 @@ public class SocketServerManager {
         public void setPage(Integer page) { this.page = page; }
         public Integer getPageSize() { return pageSize; }
         public void setPageSize(Integer pageSize) { this.pageSize = pageSize; }
+        public String getCursor() { return cursor; }
+        public void setCursor(String cursor) { this.cursor = cursor; }
+        public Boolean getIncludeTotal() { return includeTotal; }
+        public void setIncludeTotal(Boolean includeTotal) { this.includeTotal = includeTotal; }
+        public String getArrayEncoding() { return arrayEncoding; }
+        public void setArrayEncoding(String arrayEncoding) { this.arrayEncoding = arrayEncoding; }
+        public List<String> getPaths() { return paths; }
+        public void setPaths(List<String> paths) { this.paths = paths; }
     }
 
     public static class PlayerIdentitiesListRequest implements AuthPayload {
         private String key;
         private Integer page;
         private Integer pageSize;
+        private String cursor; // optional, next_cursor of the previous page
+        private Boolean includeTotal; // optional, false skips the total count
 
         public PlayerIdentitiesListRequest() {}
 
@@ -1867,6 +2114,10 @@ public class SocketServerManager {
         public void setPage(Integer page) { this.page = page; }
         public Integer getPageSize() { return pageSize; }
         public void setPageSize(Integer pageSize) { this.pageSize = pageSize; }
+        public String getCursor() { return cursor; }
+        public void setCursor(String cursor) { this.cursor = cursor; }
+        public Boolean getIncludeTotal() { return includeTotal; }
+        public void setIncludeTotal(Boolean includeTotal) { this.includeTotal = includeTotal; }
     }
 
     public static class MtrLogsQueryRequest implements AuthPayload {
@@ -1883,6 +2134,8 @@ public class SocketServerManager {
         private int pageSize = 50;
         private String order = "desc";
         private String orderColumn; // optional: timestamp|id; default timestamp
+        private String cursor;      // optional, next_cursor of the previous page
+        private Boolean includeTotal; // optional, false skips the total count
 
         public MtrLogsQueryRequest() {}
 
@@ -1912,6 +2165,10 @@ public class SocketServerManager {
         public void setOrder(String order) { this.order = order; }
         public String getOrderColumn() { return orderColumn; }
         public void setOrderColumn(String orderColumn) { this.orderColumn = orderColumn; }
+        public String getCursor() { return cursor; }
+        public void setCursor(String cursor) { this.cursor = cursor; }
+        public Boolean getIncludeTotal() { return includeTotal; }
+        public void setIncludeTotal(Boolean includeTotal) { this.includeTotal = includeTotal; }
     }
 
     public static class MtrLogDetailRequest implements AuthPayload {
@@ -1936,6 +2193,8 @@ public class SocketServerManager {
         private Long endAt;        // epoch millis optional
         private int page = 1;
         private int pageSize = 50;
+        private String cursor;     // optional, next_cursor of the previous page
+        private Boolean includeTotal; // optional, false skips the total count
 
         public PlayerSessionsQueryRequest() {}
 
@@ -1961,6 +2220,10 @@ public class SocketServerManager {
         public void setPage(int page) { this.page = page; }
         public int getPageSize() { return pageSize; }
         public void setPageSize(int pageSize) { this.pageSize = pageSize; }
+        public String getCursor() { return cursor; }
+        public void setCursor(String cursor) { this.cursor = cursor; }
+        public Boolean getIncludeTotal() { return includeTotal; }
+        public void setIncludeTotal(Boolean includeTotal) { this.includeTotal = includeTotal; }
     }
 
     public static class PlayersDataRequest implements AuthPayload {
@@ -2025,5 +2288,32 @@ public class SocketServerManager {
         public long getAmount() { return amount; }
         public void setAmount(long amount) { this.amount = amount; }
     }
+
+    public static class BalanceTransfer {
+        private String from;
+        private String to;
+        private long amount;
+
+        public BalanceTransfer() {}
+
+        public String getFrom() { return from; }
+        public void setFrom(String from) { this.from = from; }
+        public String getTo() { return to; }
+        public void setTo(String to) { this.to = to; }
+        public long getAmount() { return amount; }
+        public void setAmount(long amount) { this.amount = amount; }
+    }
+
+    public static class PlayerBalanceTransferRequest implements AuthPayload {
+        private String key;
+        private List<BalanceTransfer> transfers;
+
+        public PlayerBalanceTransferRequest() {}
+
+        public String getKey() { return key; }
+        public void setKey(String key) { this.key = key; }
+        public List<BalanceTransfer> getTransfers() { return transfers; }
+        public void setTransfers(List<BalanceTransfer> transfers) { this.transfers = transfers; }
+    }
 }
 
@@ -0,0 +1,228 @@
+package com.hydroline.beacon.storage;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Small fixed-capacity pool of SQLite connections. Connections are opened lazily up to {@code capacity}
+ * and handed out wrapped in a proxy whose {@code close()} returns the physical connection to the pool,
+ * so callers keep using plain try-with-resources.
+ */
+final class ConnectionPool {
+
+    interface ConnectionFactory {
+        Connection open() throws SQLException;
+    }
+
+    private final String name;
+    private final int capacity;
+    private final long timeoutMillis;
+    private final ConnectionFactory factory;
+
+    private final LinkedBlockingQueue<Connection> idle = new LinkedBlockingQueue<>();
+    private final List<Connection> all = new ArrayList<>();
+    private volatile boolean closed;
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final LongAdder checkouts = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder holdNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong maxHoldNanos = new AtomicLong();
+
+    ConnectionPool(String name, int capacity, long timeoutMillis, ConnectionFactory factory) {
+        this.name = name;
+        this.capacity = Math.max(1, capacity);
+        this.timeoutMillis = timeoutMillis;
+        this.factory = factory;
+    }
+
+    Connection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool '" + name + "' is closed");
+        }
+        long startedAt = System.nanoTime();
+        Connection raw = idle.poll();
+        if (raw == null) {
+            raw = openIfBelowCapacity();
+        }
+        if (raw == null) {
+            waiting.incrementAndGet();
+            try {
+                raw = idle.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for " + name + " connection", e);
+            } finally {
+                waiting.decrementAndGet();
+            }
+            if (raw == null) {
+                timeouts.increment();
+                throw new SQLException("Timed out after " + timeoutMillis + " ms waiting for " + name + " connection");
+            }
+        }
+        long waited = System.nanoTime() - startedAt;
+        waitNanos.add(waited);
+        updateMax(maxWaitNanos, waited);
+        checkouts.increment();
+        active.incrementAndGet();
+        return wrap(raw);
+    }
+
+    private Connection openIfBelowCapacity() throws SQLException {
+        synchronized (all) {
+            if (all.size() >= capacity) {
+                return null;
+            }
+            Connection raw = factory.open();
+            all.add(raw);
+            return raw;
+        }
+    }
+
+    private void release(Connection raw, long borrowedAt) {
+        long held = System.nanoTime() - borrowedAt;
+        holdNanos.add(held);
+        updateMax(maxHoldNanos, held);
+        active.decrementAndGet();
+
+        boolean healthy;
+        try {
+            // Leave the connection the way the next borrower expects it: autocommit with nothing pending
+            if (!raw.getAutoCommit()) {
+                raw.rollback();
+                raw.setAutoCommit(true);
+            }
+            healthy = !raw.isClosed();
+        } catch (SQLException e) {
+            healthy = false;
+        }
+
+        if (healthy && !closed) {
+            idle.offer(raw);
+            return;
+        }
+        synchronized (all) {
+            all.remove(raw);
+        }
+        closeQuietly(raw);
+    }
+
+    void close() {
+        closed = true;
+        synchronized (all) {
+            for (Connection raw : all) {
+                closeQuietly(raw);
+            }
+            all.clear();
+        }
+        idle.clear();
+    }
+
+    Map<String, Object> snapshot() {
+        Map<String, Object> stats = new HashMap<>();
+        long count = checkouts.sum();
+        int opened;
+        synchronized (all) {
+            opened = all.size();
+        }
+        stats.put("capacity", capacity);
+        stats.put("opened", opened);
+        stats.put("active", active.get());
+        stats.put("idle", idle.size());
+        stats.put("waiting", waiting.get());
+        stats.put("checkouts", count);
+        stats.put("timeouts", timeouts.sum());
+        stats.put("wait_avg_ms", count > 0 ? nanosToMillis(waitNanos.sum() / count) : 0.0);
+        stats.put("wait_max_ms", nanosToMillis(maxWaitNanos.get()));
+        stats.put("hold_avg_ms", count > 0 ? nanosToMillis(holdNanos.sum() / count) : 0.0);
+        stats.put("hold_max_ms", nanosToMillis(maxHoldNanos.get()));
+        return stats;
+    }
+
+    private Connection wrap(Connection raw) {
+        return (Connection) Proxy.newProxyInstance(
+                ConnectionPool.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new PooledConnectionHandler(raw, System.nanoTime())
+        );
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+        long current;
+        while (value > (current = max.get())) {
+            if (max.compareAndSet(current, value)) {
+                return;
+            }
+        }
+    }
+
+    private static double nanosToMillis(long nanos) {
+        return Math.round(nanos / 1_000.0) / 1_000.0;
+    }
+
+    private static void closeQuietly(Connection raw) {
+        try {
+            raw.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    private final class PooledConnectionHandler implements InvocationHandler {
+        private final Connection raw;
+        private final long borrowedAt;
+        private boolean returned;
+
+        private PooledConnectionHandler(Connection raw, long borrowedAt) {
+            this.raw = raw;
+            this.borrowedAt = borrowedAt;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String methodName = method.getName();
+            if ("close".equals(methodName)) {
+                if (!returned) {
+                    returned = true;
+                    release(raw, borrowedAt);
+                }
+                return null;
+            }
+            if ("isClosed".equals(methodName)) {
+                return returned || raw.isClosed();
+            }
+            if ("equals".equals(methodName)) {
+                return proxy == args[0];
+            }
+            if ("hashCode".equals(methodName)) {
+                return System.identityHashCode(proxy);
+            }
+            if ("toString".equals(methodName)) {
+                return "Pooled[" + name + "] " + raw;
+            }
+            if (returned) {
+                throw new SQLException("Connection has already been returned to the " + name + " pool");
+            }
+            try {
+                return method.invoke(raw, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.hydroline.beacon.storage;
 
+import com.hydroline.beacon.config.PluginConfig;
 import org.bukkit.plugin.Plugin;
 
 import java.io.File;
@@ -7,14 +8,32 @@ import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class DatabaseManager {
 
+    private static final int BUSY_TIMEOUT_MS = 5000;
+    private static final long WRITE_QUEUE_CLOSE_TIMEOUT_MS = 15000L;
+
     private final Plugin plugin;
     private final String jdbcUrl;
+    private final PluginConfig config;
+
+    // One dedicated writer (SQLite allows a single writer anyway) and a bounded set of query_only readers
+    private volatile ConnectionPool writerPool;
+    private volatile ConnectionPool readerPool;
+    private volatile DatabaseWriteQueue writeQueue;
+    private final FileSyncIndex fileSyncIndex = new FileSyncIndex();
+    private final PlayerNbtMemoryCache playerNbtMemoryCache;
+    private final TotalsCache totalsCache = new TotalsCache();
 
-    public DatabaseManager(Plugin plugin) {
+    public DatabaseManager(Plugin plugin, PluginConfig config) {
         this.plugin = plugin;
+        this.config = config;
+        this.playerNbtMemoryCache = new PlayerNbtMemoryCache(config.getNbtMemoryCacheMb() * 1024L * 1024L,
+                config.getNbtCacheTtlMinutes() * 60_000L);
         File dataFolder = plugin.getDataFolder();
         if (!dataFolder.exists()) {
             //noinspection ResultOfMethodCallIgnored
@@ -22,140 +41,142 @@ public class DatabaseManager {
         }
         File dbFile = new File(dataFolder, "hydroline_beacon.db");
         // Add busy_timeout to reduce SQLITE_BUSY under concurrent writers
-        this.jdbcUrl = "jdbc:sqlite:" + dbFile.getAbsolutePath() + "?busy_timeout=5000";
+        this.jdbcUrl = "jdbc:sqlite:" + dbFile.getAbsolutePath() + "?busy_timeout=" + BUSY_TIMEOUT_MS;
     }
 
     public void initialize() throws SQLException {
-        try (Connection connection = getConnection()) {
-            try (Statement statement = connection.createStatement()) {
-                statement.executeUpdate("PRAGMA journal_mode=WAL");
-                statement.executeUpdate("PRAGMA busy_timeout=5000");
-            }
-            createSchema(connection);
+        long timeoutMs = config.getDbPoolTimeoutMillis();
+        this.writerPool = new ConnectionPool("writer", 1, timeoutMs, this::openWriterConnection);
+        try (Connection connection = getWriteConnection()) {
+            new SchemaMigrator(plugin.getLogger()).migrate(connection);
+            fileSyncIndex.load(connection);
+        }
+        this.readerPool = new ConnectionPool("reader", config.getDbReaderConnections(), timeoutMs, this::openReaderConnection);
+        DatabaseWriteQueue queue = new DatabaseWriteQueue(this, plugin.getLogger(),
+                config.getDbWriteBatchMillis(), config.getDbWriteBatchSize());
+        queue.start();
+        this.writeQueue = queue;
+    }
+
+    /**
+     * Queue a write for the single writer thread. The future completes once the group containing it commits.
+     */
+    public <T> CompletableFuture<T> submitWrite(DatabaseWriteQueue.WriteCommand<T> command) {
+        DatabaseWriteQueue queue = writeQueue;
+        if (queue == null) {
+            CompletableFuture<T> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new SQLException("Database is not initialized"));
+            return failed;
+        }
+        return queue.submit(command);
+    }
+
+    /**
+     * Borrow the single writer connection. Close it to hand it back; any transaction left open is rolled back.
+     */
+    public Connection getWriteConnection() throws SQLException {
+        ConnectionPool pool = writerPool;
+        if (pool == null) {
+            throw new SQLException("Database is not initialized");
+        }
+        return pool.borrow();
+    }
+
+    /**
+     * Borrow a read-only connection (PRAGMA query_only) from the reader pool.
+     */
+    public Connection getReadConnection() throws SQLException {
+        ConnectionPool pool = readerPool;
+        if (pool == null) {
+            throw new SQLException("Database is not initialized");
+        }
+        return pool.borrow();
+    }
+
+    /**
+     * Per-file sync state of the scanners, loaded at startup.
+     */
+    public FileSyncIndex getFileSyncIndex() {
+        return fileSyncIndex;
+    }
+
+    /**
+     * Byte-bounded in-memory layer over {@code player_nbt_cache}.
+     */
+    public PlayerNbtMemoryCache getPlayerNbtMemoryCache() {
+        return playerNbtMemoryCache;
+    }
+
+    /**
+     * Maintained and cached row counts for the paged queries.
+     */
+    public TotalsCache getTotalsCache() {
+        return totalsCache;
+    }
+
+    public Map<String, Object> getPoolStats() {
+        Map<String, Object> stats = new HashMap<>();
+        ConnectionPool writer = writerPool;
+        ConnectionPool reader = readerPool;
+        stats.put("writer", writer != null ? writer.snapshot() : null);
+        stats.put("readers", reader != null ? reader.snapshot() : null);
+        return stats;
+    }
+
+    public Map<String, Object> getWriteQueueStats() {
+        DatabaseWriteQueue queue = writeQueue;
+        return queue != null ? queue.snapshot() : null;
+    }
+
+    public void close() {
+        DatabaseWriteQueue queue = writeQueue;
+        writeQueue = null;
+        if (queue != null) {
+            queue.close(WRITE_QUEUE_CLOSE_TIMEOUT_MS);
+        }
+        ConnectionPool reader = readerPool;
+        ConnectionPool writer = writerPool;
+        readerPool = null;
+        writerPool = null;
+        if (reader != null) {
+            reader.close();
+        }
+        if (writer != null) {
+            writer.close();
         }
     }
 
-    public Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(jdbcUrl);
+    private Connection openWriterConnection() throws SQLException {
+        Connection connection = DriverManager.getConnection(jdbcUrl);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("PRAGMA journal_mode=WAL");
+            statement.execute("PRAGMA synchronous=NORMAL");
+            statement.execute("PRAGMA busy_timeout=" + BUSY_TIMEOUT_MS);
+            applyCachePragmas(statement);
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+        return connection;
     }
 
-    private void createSchema(Connection connection) throws SQLException {
+    private Connection openReaderConnection() throws SQLException {
+        Connection connection = DriverManager.getConnection(jdbcUrl);
         try (Statement statement = connection.createStatement()) {
-            statement.executeUpdate(
-                    "CREATE TABLE IF NOT EXISTS schema_version (" +
-                            "id INTEGER PRIMARY KEY CHECK (id = 1)," +
-                            "version INTEGER NOT NULL," +
-                            "updated_at INTEGER NOT NULL" +
-                            ")"
-            );
-
-            statement.executeUpdate(
-                    "CREATE TABLE IF NOT EXISTS player_sessions (" +
-                            "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                            "event_type TEXT NOT NULL," +
-                            "occurred_at INTEGER NOT NULL," +
-                            "player_uuid TEXT NOT NULL," +
-                            "player_name TEXT," +
-                            "player_ip TEXT," +
-                            "world_name TEXT," +
-                            "dimension_key TEXT," +
-                            "x REAL," +
-                            "y REAL," +
-                            "z REAL" +
-                            ")"
-            );
-
-            statement.executeUpdate(
-                    "CREATE TABLE IF NOT EXISTS player_advancements (" +
-                            "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                            "player_uuid TEXT NOT NULL," +
-                            "advancement_key TEXT NOT NULL," +
-                            "value BLOB NOT NULL," +
-                            "last_updated INTEGER NOT NULL," +
-                            "UNIQUE(player_uuid, advancement_key)" +
-                            ")"
-            );
-
-            statement.executeUpdate(
-                    "CREATE TABLE IF NOT EXISTS player_stats (" +
-                            "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                            "player_uuid TEXT NOT NULL," +
-                            "stat_key TEXT NOT NULL," +
-                            "value INTEGER NOT NULL," +
-                            "last_updated INTEGER NOT NULL," +
-                            "UNIQUE(player_uuid, stat_key)" +
-                            ")"
-            );
-
-            statement.executeUpdate(
-                    "CREATE TABLE IF NOT EXISTS mtr_logs (" +
-                            "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                            "timestamp TEXT," +
-                            "player_name TEXT," +
-                            "player_uuid TEXT," +
-                            "class_name TEXT," +
-                            "entry_id TEXT," +
-                            "entry_name TEXT," +
-                            "position TEXT," +
-                            "change_type TEXT," +
-                            "old_data TEXT," +
-                            "new_data TEXT," +
-                            "source_file_path TEXT," +
-                            "source_line INTEGER," +
-                            "dimension_context TEXT" +
-                            ")"
-            );
-
-            statement.executeUpdate(
-                    "CREATE TABLE IF NOT EXISTS mtr_files (" +
-                            "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                            "file_path TEXT NOT NULL UNIQUE," +
-                            "last_modified INTEGER NOT NULL," +
-                            "last_processed INTEGER," +
-                            "processed INTEGER NOT NULL DEFAULT 0," +
-                            "dimension_context TEXT" +
-                            ")"
-            );
-
-            statement.executeUpdate(
-                    "CREATE TABLE IF NOT EXISTS file_sync_state (" +
-                            "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                            "file_type TEXT NOT NULL," +
-                            "player_uuid TEXT," +
-                            "file_path TEXT NOT NULL," +
-                            "last_modified INTEGER NOT NULL," +
-                            "last_processed INTEGER," +
-                            "UNIQUE(file_type, file_path)" +
-                            ")"
-            );
-
-                // Map UUID <-> last known player name (from playerdata NBT or other sources)
-                statement.executeUpdate(
-                    "CREATE TABLE IF NOT EXISTS player_identities (" +
-                        "player_uuid TEXT PRIMARY KEY," +
-                        "player_name TEXT," +
-                        "first_played INTEGER," +
-                        "last_played INTEGER," +
-                        "last_updated INTEGER NOT NULL" +
-                        ")"
-                );
-
-                // backfill columns for existing deployments (SQLite throws if column exists)
-                try {
-                    statement.executeUpdate("ALTER TABLE player_identities ADD COLUMN first_played INTEGER");
-                } catch (SQLException ignored) {}
-                try {
-                    statement.executeUpdate("ALTER TABLE player_identities ADD COLUMN last_played INTEGER");
-                } catch (SQLException ignored) {}
-
-                // Cache of raw player NBT JSON to avoid heavy parsing on every request
-                statement.executeUpdate(
-                    "CREATE TABLE IF NOT EXISTS player_nbt_cache (" +
-                        "player_uuid TEXT PRIMARY KEY," +
-                        "raw_json TEXT NOT NULL," +
-                        "cached_at INTEGER NOT NULL" +
-                        ")"
-                );
+            statement.execute("PRAGMA query_only=1");
+            statement.execute("PRAGMA busy_timeout=" + BUSY_TIMEOUT_MS);
+            applyCachePragmas(statement);
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
         }
+        return connection;
+    }
+
+    private void applyCachePragmas(Statement statement) throws SQLException {
+        // negative cache_size is in KiB rather than pages
+        statement.execute("PRAGMA cache_size=-" + config.getDbCacheSizeKib());
+        statement.execute("PRAGMA mmap_size=" + (config.getDbMmapSizeMb() * 1024L * 1024L));
+        statement.execute("PRAGMA temp_store=MEMORY");
     }
 }
@@ -0,0 +1,221 @@
+package com.hydroline.beacon.storage;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Single-writer pipeline for every database write. A dedicated thread drains queued commands and runs them
+ * in one transaction per group, committing once the group reaches {@code batchSize} commands or
+ * {@code batchMillis} has elapsed since the first command of the group was taken.
+ * <p>
+ * Each command runs inside its own savepoint, so a failing command only fails its own future.
+ * Futures are completed on the writer thread after the group commit, so callbacks should stay light.
+ */
+public class DatabaseWriteQueue {
+
+    /**
+     * A unit of write work executed on the writer connection. Implementations must not commit,
+     * roll back or toggle auto-commit; the queue owns the transaction.
+     */
+    public interface WriteCommand<T> {
+        T execute(Connection connection) throws SQLException;
+    }
+
+    private static final class PendingWrite<T> {
+        private final WriteCommand<T> command;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private T result;
+        private Throwable failure;
+
+        private PendingWrite(WriteCommand<T> command) {
+            this.command = command;
+        }
+
+        private void run(Connection connection) throws SQLException {
+            result = command.execute(connection);
+        }
+
+        private void complete() {
+            if (failure != null) {
+                future.completeExceptionally(failure);
+            } else {
+                future.complete(result);
+            }
+        }
+    }
+
+    private static final long IDLE_POLL_MILLIS = 200L;
+
+    private final DatabaseManager databaseManager;
+    private final Logger logger;
+    private final long batchMillis;
+    private final int batchSize;
+    private final LinkedBlockingQueue<PendingWrite<?>> queue = new LinkedBlockingQueue<>();
+    private final Thread writerThread;
+    // held while checking running and enqueueing, and while clearing it, so no write lands after close drained
+    private final Object lifecycleLock = new Object();
+    private volatile boolean running = true;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder committedOps = new LongAdder();
+    private final LongAdder failedOps = new LongAdder();
+    private final LongAdder commits = new LongAdder();
+    private final LongAdder commitNanos = new LongAdder();
+    private final AtomicLong maxGroupSize = new AtomicLong();
+
+    DatabaseWriteQueue(DatabaseManager databaseManager, Logger logger, long batchMillis, int batchSize) {
+        this.databaseManager = databaseManager;
+        this.logger = logger;
+        this.batchMillis = Math.max(0L, batchMillis);
+        this.batchSize = Math.max(1, batchSize);
+        this.writerThread = new Thread(this::runLoop, "Beacon-DB-Writer");
+        this.writerThread.setDaemon(true);
+    }
+
+    void start() {
+        writerThread.start();
+    }
+
+    public <T> CompletableFuture<T> submit(WriteCommand<T> command) {
+        PendingWrite<T> pending = new PendingWrite<>(command);
+        synchronized (lifecycleLock) {
+            if (running) {
+                submitted.increment();
+                queue.add(pending);
+                return pending.future;
+            }
+        }
+        pending.future.completeExceptionally(new SQLException("Database write queue is closed"));
+        return pending.future;
+    }
+
+    /**
+     * Stop accepting writes, flush whatever is queued and wait for the writer thread to finish.
+     */
+    void close(long timeoutMillis) {
+        synchronized (lifecycleLock) {
+            running = false;
+        }
+        try {
+            writerThread.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writerThread.isAlive()) {
+            logger.warning("Database writer did not finish within " + timeoutMillis + " ms; " + queue.size() + " write(s) dropped.");
+        }
+        PendingWrite<?> leftover;
+        while ((leftover = queue.poll()) != null) {
+            leftover.future.completeExceptionally(new SQLException("Database write queue is closed"));
+        }
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stats = new HashMap<>();
+        long groups = commits.sum();
+        long ops = committedOps.sum();
+        stats.put("queue_depth", queue.size());
+        stats.put("submitted", submitted.sum());
+        stats.put("committed", ops);
+        stats.put("failed", failedOps.sum());
+        stats.put("commits", groups);
+        stats.put("group_size_avg", groups > 0 ? Math.round(ops * 10.0 / groups) / 10.0 : 0.0);
+        stats.put("group_size_max", maxGroupSize.get());
+        stats.put("commit_avg_ms", groups > 0 ? Math.round(commitNanos.sum() / (double) groups / 1_000.0) / 1_000.0 : 0.0);
+        return stats;
+    }
+
+    private void runLoop() {
+        List<PendingWrite<?>> group = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingWrite<?> first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchMillis);
+                while (group.size() < batchSize) {
+                    if (queue.drainTo(group, batchSize - group.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0L || !running) {
+                        break;
+                    }
+                    PendingWrite<?> next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    group.add(next);
+                }
+                commitGroup(group);
+            } catch (InterruptedException e) {
+                // keep draining until close() flips the running flag
+                Thread.interrupted();
+            } catch (Throwable t) {
+                logger.severe("Database writer loop error: " + t.getMessage());
+                for (PendingWrite<?> pending : group) {
+                    pending.future.completeExceptionally(t);
+                }
+            } finally {
+                group.clear();
+            }
+        }
+    }
+
+    private void commitGroup(List<PendingWrite<?>> group) {
+        long startedAt = System.nanoTime();
+        int failed = 0;
+        try (Connection connection = databaseManager.getWriteConnection()) {
+            connection.setAutoCommit(false);
+            for (PendingWrite<?> pending : group) {
+                Savepoint savepoint = connection.setSavepoint();
+                try {
+                    pending.run(connection);
+                    connection.releaseSavepoint(savepoint);
+                } catch (Exception e) {
+                    connection.rollback(savepoint);
+                    pending.failure = e;
+                    failed++;
+                }
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            logger.severe("Failed to commit " + group.size() + " queued write(s): " + e.getMessage());
+            for (PendingWrite<?> pending : group) {
+                if (pending.failure == null) {
+                    pending.failure = e;
+                    failed++;
+                }
+            }
+        }
+
+        commits.increment();
+        commitNanos.add(System.nanoTime() - startedAt);
+        committedOps.add(group.size() - failed);
+        failedOps.add(failed);
+        long size = group.size();
+        long currentMax;
+        while (size > (currentMax = maxGroupSize.get())) {
+            if (maxGroupSize.compareAndSet(currentMax, size)) {
+                break;
+            }
+        }
+
+        for (PendingWrite<?> pending : group) {
+            pending.complete();
+        }
+    }
+}
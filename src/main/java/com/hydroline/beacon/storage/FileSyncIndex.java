@@ -0,0 +1,129 @@
+package com.hydroline.beacon.storage;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory copy of the per-file sync state kept in {@code file_sync_state} and {@code mtr_files}, so an idle
+ * scan can decide that a file is unchanged with a map lookup instead of a query. Loaded once at startup;
+ * scanners update it after the write carrying the new state has committed.
+ */
+public final class FileSyncIndex {
+
+    /**
+     * File type under which {@code mtr_files} rows are indexed.
+     */
+    public static final String TYPE_MTR = "mtr";
+
+    public static final class Entry {
+        private final long lastModified;
+        private final long size;
+        private final long lastProcessed;
+
+        private Entry(long lastModified, long size, long lastProcessed) {
+            this.lastModified = lastModified;
+            this.size = size;
+            this.lastProcessed = lastProcessed;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * @return recorded size in bytes, or -1 when the row predates size tracking
+         */
+        public long getSize() {
+            return size;
+        }
+
+        public long getLastProcessed() {
+            return lastProcessed;
+        }
+
+        public boolean isUnchanged(long currentLastModified, long currentSize) {
+            return lastModified == currentLastModified
+                    && size == currentSize
+                    && lastProcessed >= currentLastModified;
+        }
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Set<String> mtrContexts = ConcurrentHashMap.newKeySet();
+
+    FileSyncIndex() {
+    }
+
+    void load(Connection connection) throws SQLException {
+        entries.clear();
+        mtrContexts.clear();
+        try (PreparedStatement ps = connection.prepareStatement(
+                "SELECT file_type, file_path, last_modified, file_size, last_processed FROM file_sync_state");
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                entries.put(key(rs.getString(1), rs.getString(2)),
+                        new Entry(rs.getLong(3), sizeOrUnknown(rs, 4), rs.getLong(5)));
+            }
+        }
+        // Files without a committed offset were ingested by an older version and must be re-read once,
+        // so their size is left unknown
+        try (PreparedStatement ps = connection.prepareStatement(
+                "SELECT file_path, last_modified, CASE WHEN committed_offset IS NULL THEN NULL ELSE file_size END, " +
+                        "last_processed, dimension_context FROM mtr_files");
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                entries.put(key(TYPE_MTR, rs.getString(1)),
+                        new Entry(rs.getLong(2), sizeOrUnknown(rs, 3), rs.getLong(4)));
+                String context = rs.getString(5);
+                if (context != null) {
+                    mtrContexts.add(context);
+                }
+            }
+        }
+    }
+
+    public Entry get(String fileType, String filePath) {
+        return entries.get(key(fileType, filePath));
+    }
+
+    public boolean isUnchanged(String fileType, String filePath, long lastModified, long size) {
+        Entry entry = entries.get(key(fileType, filePath));
+        return entry != null && entry.isUnchanged(lastModified, size);
+    }
+
+    public void put(String fileType, String filePath, long lastModified, long size, long lastProcessed) {
+        entries.put(key(fileType, filePath), new Entry(lastModified, size, lastProcessed));
+    }
+
+    public void putMtr(String filePath, String context, long lastModified, long size, long lastProcessed) {
+        put(TYPE_MTR, filePath, lastModified, size, lastProcessed);
+        if (context != null) {
+            mtrContexts.add(context);
+        }
+    }
+
+    /**
+     * @return whether any MTR log of this dimension context has been ingested before
+     */
+    public boolean hasMtrContext(String context) {
+        return mtrContexts.contains(context);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private static long sizeOrUnknown(ResultSet rs, int column) throws SQLException {
+        long size = rs.getLong(column);
+        return rs.wasNull() ? -1L : size;
+    }
+
+    private static String key(String fileType, String filePath) {
+        return fileType + '\u0000' + filePath;
+    }
+}
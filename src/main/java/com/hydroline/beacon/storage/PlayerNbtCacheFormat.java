@@ -0,0 +1,129 @@
+package com.hydroline.beacon.storage;
+
+import com.hydroline.beacon.util.NbtProjection;
+import com.hydroline.beacon.util.NbtUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * How {@code player_nbt_cache.payload} is stored, chosen by {@code nbt_cache_format}. JSON is only produced when
+ * {@code get_player_nbt} decodes a row, so {@link #NBT} caches the playerdata bytes as read from disk.
+ */
+public enum PlayerNbtCacheFormat {
+    /**
+     * The gzipped playerdata file, byte for byte.
+     */
+    NBT("nbt"),
+    /**
+     * Deflate-compressed JSON text in the list array encoding.
+     */
+    JSON_DEFLATE("json_deflate"),
+    /**
+     * Uncompressed UTF-8 JSON text in the list array encoding.
+     */
+    JSON("json");
+
+    private final String configName;
+
+    PlayerNbtCacheFormat(String configName) {
+        this.configName = configName;
+    }
+
+    public String getConfigName() {
+        return configName;
+    }
+
+    /**
+     * @return the format with this config name (case-insensitive), or null when unknown
+     */
+    public static PlayerNbtCacheFormat fromConfigName(String name) {
+        if (name == null) {
+            return null;
+        }
+        for (PlayerNbtCacheFormat format : values()) {
+            if (format.configName.equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Build the payload for a playerdata file.
+     *
+     * @param listJson the file already converted with the list array encoding, or null to convert it here
+     */
+    public byte[] encode(byte[] gzippedNbt, String listJson) throws IOException {
+        if (this == NBT) {
+            return gzippedNbt;
+        }
+        String json = listJson != null ? listJson : NbtUtils.readPlayerDatToJson(new ByteArrayInputStream(gzippedNbt));
+        byte[] utf8 = json.getBytes(StandardCharsets.UTF_8);
+        if (this == JSON) {
+            return utf8;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, utf8.length / 4));
+        try (DeflaterOutputStream deflater = new DeflaterOutputStream(out)) {
+            deflater.write(utf8);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decode a payload stored in this format to JSON text.
+     *
+     * @param projection subtrees to keep, or null for the whole document
+     * @return the JSON, or null when the payload cannot give {@code arrayEncoding} or {@code projection}
+     * (only {@link #NBT} keeps the array tags apart from lists and can be projected while streaming)
+     */
+    public String decode(byte[] payload,
+                         NbtUtils.ArrayEncoding arrayEncoding,
+                         NbtProjection projection) throws IOException {
+        if (this == NBT) {
+            return NbtUtils.readPlayerDatToJson(new ByteArrayInputStream(payload), arrayEncoding, projection,
+                    Collections.<String>emptyList(), null);
+        }
+        if (arrayEncoding != NbtUtils.ArrayEncoding.LIST || projection != null) {
+            return null;
+        }
+        if (this == JSON) {
+            return new String(payload, StandardCharsets.UTF_8);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length * 4);
+        try (InputStream inflater = new InflaterInputStream(new ByteArrayInputStream(payload))) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = inflater.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return SHA-256 of the playerdata bytes as hex, stored as {@code content_hash}
+     */
+    public static String contentHash(byte[] gzippedNbt) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+        byte[] hash = digest.digest(gzippedNbt);
+        StringBuilder sb = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
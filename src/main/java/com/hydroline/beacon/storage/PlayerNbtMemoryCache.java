@@ -0,0 +1,223 @@
+package com.hydroline.beacon.storage;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process copy of recently requested {@code player_nbt_cache} rows, bounded by payload bytes. Entries are kept
+ * in LRU order; when a new player would push out the least recently used ones, it is only admitted if a TinyLFU
+ * frequency sketch says it has been requested more often than each of them, so one-off lookups cannot flush the
+ * players a dashboard keeps polling. Entries expire with {@code nbt_cache_ttl_minutes} and are invalidated by the
+ * identity scan when the playerdata file changes.
+ */
+public final class PlayerNbtMemoryCache {
+
+    // rough per-entry cost of the map node, key and Entry object on top of the payload
+    private static final int ENTRY_OVERHEAD_BYTES = 160;
+
+    public static final class Entry {
+        private final PlayerNbtCacheFormat format;
+        private final byte[] payload;
+        private final String contentHash;
+        private final long cachedAt;
+
+        public Entry(PlayerNbtCacheFormat format, byte[] payload, String contentHash, long cachedAt) {
+            this.format = format;
+            this.payload = payload;
+            this.contentHash = contentHash;
+            this.cachedAt = cachedAt;
+        }
+
+        public PlayerNbtCacheFormat getFormat() {
+            return format;
+        }
+
+        public byte[] getPayload() {
+            return payload;
+        }
+
+        public String getContentHash() {
+            return contentHash;
+        }
+
+        public long getCachedAt() {
+            return cachedAt;
+        }
+
+        private long weight() {
+            return (long) payload.length + ENTRY_OVERHEAD_BYTES;
+        }
+    }
+
+    private final long maxBytes;
+    private final long ttlMillis;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final FrequencySketch sketch;
+    private long usedBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public PlayerNbtMemoryCache(long maxBytes, long ttlMillis) {
+        this.maxBytes = maxBytes;
+        this.ttlMillis = ttlMillis;
+        // one sketch slot per ~4 KiB of budget, a typical compressed playerdata size
+        this.sketch = new FrequencySketch((int) Math.min(1 << 20, Math.max(256L, maxBytes / 4096L)));
+    }
+
+    /**
+     * @return the live entry for this player, or null on a miss or when the entry has outlived the TTL
+     */
+    public synchronized Entry get(String playerUuid, long now) {
+        sketch.increment(playerUuid);
+        Entry entry = entries.get(playerUuid);
+        if (entry != null && entry.cachedAt + ttlMillis <= now) {
+            remove(playerUuid);
+            entry = null;
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry;
+    }
+
+    /**
+     * Store an entry, replacing any previous one for the player. A new player only displaces others when the
+     * frequency sketch rates it above every entry it would evict; otherwise the entry is dropped.
+     */
+    public synchronized void put(String playerUuid, Entry entry) {
+        long weight = entry.weight();
+        if (weight > maxBytes) {
+            rejections.increment();
+            return;
+        }
+        boolean replacing = remove(playerUuid) != null;
+        if (usedBytes + weight > maxBytes && !replacing && !admit(playerUuid, weight)) {
+            rejections.increment();
+            return;
+        }
+        Iterator<Map.Entry<String, Entry>> lru = entries.entrySet().iterator();
+        while (usedBytes + weight > maxBytes && lru.hasNext()) {
+            Entry victim = lru.next().getValue();
+            lru.remove();
+            usedBytes -= victim.weight();
+            evictions.increment();
+        }
+        entries.put(playerUuid, entry);
+        usedBytes += weight;
+    }
+
+    public synchronized void invalidate(String playerUuid) {
+        if (remove(playerUuid) != null) {
+            invalidations.increment();
+        }
+    }
+
+    public synchronized Map<String, Object> snapshot() {
+        Map<String, Object> stats = new HashMap<>();
+        long hitCount = hits.sum();
+        long lookups = hitCount + misses.sum();
+        stats.put("entries", entries.size());
+        stats.put("bytes", usedBytes);
+        stats.put("max_bytes", maxBytes);
+        stats.put("hits", hitCount);
+        stats.put("misses", misses.sum());
+        stats.put("hit_rate", lookups > 0 ? Math.round(hitCount * 1000.0 / lookups) / 1000.0 : 0.0);
+        stats.put("evictions", evictions.sum());
+        stats.put("rejections", rejections.sum());
+        stats.put("invalidations", invalidations.sum());
+        return stats;
+    }
+
+    // walk the LRU end for the entries that would have to go and compare their frequencies with the candidate
+    private boolean admit(String candidate, long weight) {
+        int candidateFrequency = sketch.frequency(candidate);
+        long freed = 0L;
+        for (Map.Entry<String, Entry> victim : entries.entrySet()) {
+            if (usedBytes - freed + weight <= maxBytes) {
+                break;
+            }
+            if (sketch.frequency(victim.getKey()) >= candidateFrequency) {
+                return false;
+            }
+            freed += victim.getValue().weight();
+        }
+        return true;
+    }
+
+    private Entry remove(String playerUuid) {
+        Entry removed = entries.remove(playerUuid);
+        if (removed != null) {
+            usedBytes -= removed.weight();
+        }
+        return removed;
+    }
+
+    /**
+     * Count-min sketch of 4-bit counters with periodic halving, so frequencies reflect recent requests.
+     */
+    private static final class FrequencySketch {
+        private static final int DEPTH = 4;
+        private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+        private static final int MAX_COUNT = 15;
+
+        private final byte[][] counters;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        private FrequencySketch(int expectedEntries) {
+            int width = Integer.highestOneBit(Math.max(16, expectedEntries - 1)) << 1;
+            this.counters = new byte[DEPTH][width];
+            this.mask = width - 1;
+            this.sampleSize = width * 10;
+        }
+
+        private void increment(String key) {
+            int hash = key.hashCode();
+            boolean added = false;
+            for (int row = 0; row < DEPTH; row++) {
+                int index = index(hash, row);
+                if (counters[row][index] < MAX_COUNT) {
+                    counters[row][index]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                reset();
+            }
+        }
+
+        private int frequency(String key) {
+            int hash = key.hashCode();
+            int min = MAX_COUNT;
+            for (int row = 0; row < DEPTH; row++) {
+                min = Math.min(min, counters[row][index(hash, row)]);
+            }
+            return min;
+        }
+
+        private void reset() {
+            for (byte[] row : counters) {
+                for (int i = 0; i < row.length; i++) {
+                    row[i] = (byte) (row[i] >> 1);
+                }
+            }
+            additions /= 2;
+        }
+
+        private int index(int hash, int row) {
+            int h = (hash ^ SEEDS[row]) * 0x45D9F3B;
+            h ^= h >>> 16;
+            return h & mask;
+        }
+    }
+}
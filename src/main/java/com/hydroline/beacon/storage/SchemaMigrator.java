@@ -0,0 +1,312 @@
+package com.hydroline.beacon.storage;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Ordered schema migrations tracked in {@code schema_version}. Every migration runs in its own transaction
+ * together with the version bump, so a failed step leaves the database at the previous version.
+ * Append new steps at the end of {@link #migrations()}; never edit or reorder a released one.
+ */
+final class SchemaMigrator {
+
+    interface Migration {
+        void apply(Statement statement) throws SQLException;
+    }
+
+    private static final class Step {
+        private final int version;
+        private final String description;
+        private final Migration migration;
+
+        private Step(int version, String description, Migration migration) {
+            this.version = version;
+            this.description = description;
+            this.migration = migration;
+        }
+    }
+
+    private final Logger logger;
+
+    SchemaMigrator(Logger logger) {
+        this.logger = logger;
+    }
+
+    private List<Step> migrations() {
+        List<Step> steps = new ArrayList<>();
+        steps.add(new Step(1, "base schema", SchemaMigrator::createBaseSchema));
+        steps.add(new Step(2, "hot-path indexes for sessions and identities", SchemaMigrator::createHotPathIndexes));
+        steps.add(new Step(3, "numeric mtr_logs.timestamp_ms with range indexes", SchemaMigrator::addMtrLogEpochTimestamp));
+        steps.add(new Step(4, "committed offsets for incremental MTR log tailing", SchemaMigrator::addMtrFileOffsets));
+        steps.add(new Step(5, "file size in file_sync_state", SchemaMigrator::addFileSyncSize));
+        steps.add(new Step(6, "binary player_nbt_cache payloads with content hash", SchemaMigrator::rebuildPlayerNbtCache));
+        steps.add(new Step(7, "trigger-maintained row counts for paged tables", SchemaMigrator::addTableRowCounts));
+        return steps;
+    }
+
+    void migrate(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate(
+                    "CREATE TABLE IF NOT EXISTS schema_version (" +
+                            "id INTEGER PRIMARY KEY CHECK (id = 1)," +
+                            "version INTEGER NOT NULL," +
+                            "updated_at INTEGER NOT NULL" +
+                            ")"
+            );
+        }
+
+        int current = readVersion(connection);
+        boolean applied = false;
+        for (Step step : migrations()) {
+            if (step.version <= current) {
+                continue;
+            }
+            long startedAt = System.currentTimeMillis();
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                step.migration.apply(statement);
+                writeVersion(connection, step.version);
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw new SQLException("Schema migration v" + step.version + " (" + step.description + ") failed: " + e.getMessage(), e);
+            } finally {
+                connection.setAutoCommit(true);
+            }
+            current = step.version;
+            applied = true;
+            logger.info("Applied schema migration v" + step.version + " (" + step.description + ") in "
+                    + (System.currentTimeMillis() - startedAt) + " ms");
+        }
+
+        if (applied) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("PRAGMA optimize");
+            }
+        }
+    }
+
+    private int readVersion(Connection connection) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("SELECT version FROM schema_version WHERE id = 1");
+             ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private void writeVersion(Connection connection, int version) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(
+                "INSERT INTO schema_version (id, version, updated_at) VALUES (1, ?, ?) " +
+                        "ON CONFLICT(id) DO UPDATE SET version = excluded.version, updated_at = excluded.updated_at")) {
+            ps.setInt(1, version);
+            ps.setLong(2, System.currentTimeMillis());
+            ps.executeUpdate();
+        }
+    }
+
+    private static boolean columnExists(Statement statement, String table, String column) throws SQLException {
+        try (ResultSet rs = statement.executeQuery("PRAGMA table_info(" + table + ")")) {
+            while (rs.next()) {
+                if (column.equalsIgnoreCase(rs.getString("name"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static void addColumnIfMissing(Statement statement, String table, String column, String definition) throws SQLException {
+        if (!columnExists(statement, table, column)) {
+            statement.executeUpdate("ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
+        }
+    }
+
+    // v1: tables as they existed before versioning; IF NOT EXISTS keeps it a no-op on older deployments
+    private static void createBaseSchema(Statement statement) throws SQLException {
+        statement.executeUpdate(
+                "CREATE TABLE IF NOT EXISTS player_sessions (" +
+                        "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                        "event_type TEXT NOT NULL," +
+                        "occurred_at INTEGER NOT NULL," +
+                        "player_uuid TEXT NOT NULL," +
+                        "player_name TEXT," +
+                        "player_ip TEXT," +
+                        "world_name TEXT," +
+                        "dimension_key TEXT," +
+                        "x REAL," +
+                        "y REAL," +
+                        "z REAL" +
+                        ")"
+        );
+
+        statement.executeUpdate(
+                "CREATE TABLE IF NOT EXISTS player_advancements (" +
+                        "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                        "player_uuid TEXT NOT NULL," +
+                        "advancement_key TEXT NOT NULL," +
+                        "value BLOB NOT NULL," +
+                        "last_updated INTEGER NOT NULL," +
+                        "UNIQUE(player_uuid, advancement_key)" +
+                        ")"
+        );
+
+        statement.executeUpdate(
+                "CREATE TABLE IF NOT EXISTS player_stats (" +
+                        "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                        "player_uuid TEXT NOT NULL," +
+                        "stat_key TEXT NOT NULL," +
+                        "value INTEGER NOT NULL," +
+                        "last_updated INTEGER NOT NULL," +
+                        "UNIQUE(player_uuid, stat_key)" +
+                        ")"
+        );
+
+        statement.executeUpdate(
+                "CREATE TABLE IF NOT EXISTS mtr_logs (" +
+                        "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                        "timestamp TEXT," +
+                        "player_name TEXT," +
+                        "player_uuid TEXT," +
+                        "class_name TEXT," +
+                        "entry_id TEXT," +
+                        "entry_name TEXT," +
+                        "position TEXT," +
+                        "change_type TEXT," +
+                        "old_data TEXT," +
+                        "new_data TEXT," +
+                        "source_file_path TEXT," +
+                        "source_line INTEGER," +
+                        "dimension_context TEXT" +
+                        ")"
+        );
+
+        statement.executeUpdate(
+                "CREATE TABLE IF NOT EXISTS mtr_files (" +
+                        "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                        "file_path TEXT NOT NULL UNIQUE," +
+                        "last_modified INTEGER NOT NULL," +
+                        "last_processed INTEGER," +
+                        "processed INTEGER NOT NULL DEFAULT 0," +
+                        "dimension_context TEXT" +
+                        ")"
+        );
+
+        statement.executeUpdate(
+                "CREATE TABLE IF NOT EXISTS file_sync_state (" +
+                        "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                        "file_type TEXT NOT NULL," +
+                        "player_uuid TEXT," +
+                        "file_path TEXT NOT NULL," +
+                        "last_modified INTEGER NOT NULL," +
+                        "last_processed INTEGER," +
+                        "UNIQUE(file_type, file_path)" +
+                        ")"
+        );
+
+        // Map UUID <-> last known player name (from playerdata NBT or other sources)
+        statement.executeUpdate(
+                "CREATE TABLE IF NOT EXISTS player_identities (" +
+                        "player_uuid TEXT PRIMARY KEY," +
+                        "player_name TEXT," +
+                        "first_played INTEGER," +
+                        "last_played INTEGER," +
+                        "last_updated INTEGER NOT NULL" +
+                        ")"
+        );
+        // deployments created before first_played/last_played existed
+        addColumnIfMissing(statement, "player_identities", "first_played", "INTEGER");
+        addColumnIfMissing(statement, "player_identities", "last_played", "INTEGER");
+
+        // Cache of raw player NBT JSON to avoid heavy parsing on every request
+        statement.executeUpdate(
+                "CREATE TABLE IF NOT EXISTS player_nbt_cache (" +
+                        "player_uuid TEXT PRIMARY KEY," +
+                        "raw_json TEXT NOT NULL," +
+                        "cached_at INTEGER NOT NULL" +
+                        ")"
+        );
+    }
+
+    // v2: indexes matching the WHERE/ORDER BY shapes of loadPlayerSessions and identity lookups;
+    // the mtr_logs indexes are created on timestamp_ms in v3
+    private static void createHotPathIndexes(Statement statement) throws SQLException {
+        statement.executeUpdate("CREATE INDEX IF NOT EXISTS idx_mtr_files_dimension ON mtr_files(dimension_context)");
+
+        statement.executeUpdate("CREATE INDEX IF NOT EXISTS idx_player_sessions_player_time ON player_sessions(player_uuid, occurred_at)");
+        statement.executeUpdate("CREATE INDEX IF NOT EXISTS idx_player_sessions_time ON player_sessions(occurred_at)");
+
+        statement.executeUpdate("CREATE INDEX IF NOT EXISTS idx_player_identities_name ON player_identities(player_name, last_updated)");
+        statement.executeUpdate("CREATE INDEX IF NOT EXISTS idx_player_identities_updated ON player_identities(last_updated)");
+    }
+
+    // v3: epoch-millis copy of the CSV timestamp with the mtr_logs range indexes.
+    // Existing rows are filled in by MtrTimestampBackfill after startup.
+    private static void addMtrLogEpochTimestamp(Statement statement) throws SQLException {
+        addColumnIfMissing(statement, "mtr_logs", "timestamp_ms", "INTEGER");
+
+        statement.executeUpdate("CREATE INDEX IF NOT EXISTS idx_mtr_logs_timestamp_ms ON mtr_logs(timestamp_ms)");
+        statement.executeUpdate("CREATE INDEX IF NOT EXISTS idx_mtr_logs_player_timestamp_ms ON mtr_logs(player_uuid, timestamp_ms)");
+        statement.executeUpdate("CREATE INDEX IF NOT EXISTS idx_mtr_logs_entry_timestamp_ms ON mtr_logs(entry_id, timestamp_ms)");
+        statement.executeUpdate("CREATE INDEX IF NOT EXISTS idx_mtr_logs_dimension_timestamp_ms ON mtr_logs(dimension_context, timestamp_ms)");
+    }
+
+    // v4: how far each MTR CSV has been ingested. Rows left NULL by older versions are re-ingested once.
+    private static void addMtrFileOffsets(Statement statement) throws SQLException {
+        addColumnIfMissing(statement, "mtr_files", "committed_offset", "INTEGER");
+        addColumnIfMissing(statement, "mtr_files", "committed_records", "INTEGER");
+        addColumnIfMissing(statement, "mtr_files", "file_size", "INTEGER");
+        addColumnIfMissing(statement, "mtr_files", "head_checksum", "INTEGER");
+
+        statement.executeUpdate("CREATE INDEX IF NOT EXISTS idx_mtr_logs_source_file ON mtr_logs(source_file_path, source_line)");
+    }
+
+    // v5: size alongside last_modified so the in-memory FileSyncIndex can detect same-mtime rewrites
+    private static void addFileSyncSize(Statement statement) throws SQLException {
+        addColumnIfMissing(statement, "file_sync_state", "file_size", "INTEGER");
+    }
+
+    // v6: the cache moves from JSON text to a payload BLOB in the configured nbt_cache_format. Cached rows are
+    // only a copy of playerdata, so the old table is dropped instead of converted.
+    private static void rebuildPlayerNbtCache(Statement statement) throws SQLException {
+        statement.executeUpdate("DROP TABLE IF EXISTS player_nbt_cache");
+        statement.executeUpdate(
+                "CREATE TABLE player_nbt_cache (" +
+                        "player_uuid TEXT PRIMARY KEY," +
+                        "format TEXT NOT NULL," +
+                        "payload BLOB NOT NULL," +
+                        "content_hash TEXT NOT NULL," +
+                        "cached_at INTEGER NOT NULL" +
+                        ")"
+        );
+    }
+
+    // v7: row counts kept by triggers in the writing transaction, read by TotalsCache instead of COUNT(*).
+    // change_seq also moves on timestamp_ms backfills, which change which rows the date filters match.
+    private static void addTableRowCounts(Statement statement) throws SQLException {
+        statement.executeUpdate(
+                "CREATE TABLE IF NOT EXISTS table_row_counts (" +
+                        "table_name TEXT PRIMARY KEY," +
+                        "row_count INTEGER NOT NULL," +
+                        "change_seq INTEGER NOT NULL DEFAULT 0" +
+                        ")"
+        );
+        String[] tables = {"mtr_logs", "player_stats", "player_advancements", "player_sessions", "player_identities"};
+        for (String table : tables) {
+            statement.executeUpdate("INSERT OR REPLACE INTO table_row_counts (table_name, row_count, change_seq) " +
+                    "SELECT '" + table + "', COUNT(*), 0 FROM " + table);
+            statement.executeUpdate("CREATE TRIGGER IF NOT EXISTS trg_" + table + "_count_insert AFTER INSERT ON " + table +
+                    " BEGIN UPDATE table_row_counts SET row_count = row_count + 1, change_seq = change_seq + 1" +
+                    " WHERE table_name = '" + table + "'; END");
+            statement.executeUpdate("CREATE TRIGGER IF NOT EXISTS trg_" + table + "_count_delete AFTER DELETE ON " + table +
+                    " BEGIN UPDATE table_row_counts SET row_count = row_count - 1, change_seq = change_seq + 1" +
+                    " WHERE table_name = '" + table + "'; END");
+        }
+        statement.executeUpdate("CREATE TRIGGER IF NOT EXISTS trg_mtr_logs_timestamp_update AFTER UPDATE OF timestamp_ms ON mtr_logs" +
+                " BEGIN UPDATE table_row_counts SET change_seq = change_seq + 1 WHERE table_name = 'mtr_logs'; END");
+    }
+}
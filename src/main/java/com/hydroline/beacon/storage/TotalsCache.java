@@ -0,0 +1,154 @@
+package com.hydroline.beacon.storage;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Totals for the paged queries without a {@code COUNT(*)} per page. Whole-table totals come from
+ * {@code table_row_counts}, which triggers keep in step with every insert and delete inside the writing
+ * transaction. Filtered totals are counted once and cached per filter, tagged with the table's
+ * {@code change_seq}; the first commit that changes the table (or, for {@code mtr_logs}, backfills
+ * {@code timestamp_ms}) bumps the sequence and the cached total is recounted on its next use.
+ */
+public final class TotalsCache {
+
+    private static final int MAX_ENTRIES = 1024;
+
+    private static final class CachedTotal {
+        private final long changeSeq;
+        private final long total;
+
+        private CachedTotal(long changeSeq, long total) {
+            this.changeSeq = changeSeq;
+            this.total = total;
+        }
+    }
+
+    private final LinkedHashMap<String, CachedTotal> entries = new LinkedHashMap<String, CachedTotal>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedTotal> eldest) {
+            if (size() > MAX_ENTRIES) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private final LongAdder counterReads = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    TotalsCache() {
+    }
+
+    /**
+     * @return the maintained row count of {@code table}, or a plain {@code COUNT(*)} when the table is not tracked
+     */
+    public long rowCount(Connection connection, String table) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(
+                "SELECT row_count FROM table_row_counts WHERE table_name = ?")) {
+            ps.setString(1, table);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    counterReads.increment();
+                    return rs.getLong(1);
+                }
+            }
+        }
+        return countRows(connection, table, "", null);
+    }
+
+    /**
+     * Number of rows of {@code table} matching {@code where}.
+     *
+     * @param where  empty, or a clause starting with {@code " WHERE"} using {@code ?} placeholders
+     * @param params values for the placeholders, in order
+     */
+    public long count(Connection connection, String table, String where, List<?> params) throws SQLException {
+        if (where.isEmpty()) {
+            return rowCount(connection, table);
+        }
+        // Read the sequence before counting: a commit in between can only make the cached entry look stale,
+        // never tag an old count with the new sequence
+        long changeSeq = changeSeq(connection, table);
+        String key = table + '\u0000' + where + '\u0000' + params;
+        if (changeSeq >= 0) {
+            synchronized (this) {
+                CachedTotal entry = entries.get(key);
+                if (entry != null && entry.changeSeq == changeSeq) {
+                    hits.increment();
+                    return entry.total;
+                }
+            }
+        }
+        misses.increment();
+        long total = countRows(connection, table, where, params);
+        if (changeSeq >= 0) {
+            synchronized (this) {
+                entries.put(key, new CachedTotal(changeSeq, total));
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @return every maintained row count, keyed by table name
+     */
+    public Map<String, Long> rowCounts(Connection connection) throws SQLException {
+        Map<String, Long> counts = new HashMap<>();
+        try (PreparedStatement ps = connection.prepareStatement("SELECT table_name, row_count FROM table_row_counts");
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                counts.put(rs.getString(1), rs.getLong(2));
+            }
+        }
+        counterReads.increment();
+        return counts;
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stats = new HashMap<>();
+        synchronized (this) {
+            stats.put("entries", entries.size());
+        }
+        stats.put("max_entries", MAX_ENTRIES);
+        stats.put("counter_reads", counterReads.sum());
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("evictions", evictions.sum());
+        return stats;
+    }
+
+    // -1 when the table is not tracked, which disables caching for it
+    private static long changeSeq(Connection connection, String table) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(
+                "SELECT change_seq FROM table_row_counts WHERE table_name = ?")) {
+            ps.setString(1, table);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : -1L;
+            }
+        }
+    }
+
+    private static long countRows(Connection connection, String table, String where, List<?> params) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("SELECT COUNT(*) FROM " + table + where)) {
+            if (params != null) {
+                for (int i = 0; i < params.size(); i++) {
+                    ps.setObject(i + 1, params.get(i));
+                }
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0L;
+            }
+        }
+    }
+}
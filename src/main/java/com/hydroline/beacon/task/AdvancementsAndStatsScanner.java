@@ -1,23 +1,33 @@
 package com.hydroline.beacon.task;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.hydroline.beacon.BeaconPlugin;
 import com.hydroline.beacon.storage.DatabaseManager;
+import com.hydroline.beacon.storage.FileSyncIndex;
 import com.hydroline.beacon.util.PathUtils;
 import com.hydroline.beacon.world.WorldFileAccess;
 import org.bukkit.World;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.StringWriter;
 import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class AdvancementsAndStatsScanner {
 
@@ -25,6 +35,9 @@ public class AdvancementsAndStatsScanner {
     // Bump the stats file type key to force a rescan after fixing nested parsing.
     private static final String FILE_TYPE_STATS = "stats_v2";
 
+    // per-file lines in the scan summary; the rest are folded into "... and N more"
+    private static final int MAX_LOGGED_FILES = 20;
+
     private final BeaconPlugin plugin;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
@@ -33,234 +46,374 @@ public class AdvancementsAndStatsScanner {
     }
 
     public void scanOnce() {
+        scanOnce(true);
+    }
+
+    /**
+     * @param fullScan list every directory; otherwise only files reported by the watch service are checked
+     *                 (falling back to a listing when the watcher has no reliable change set)
+     */
+    public void scanOnce(boolean fullScan) {
         WorldFileAccess worldFileAccess = plugin.getWorldFileAccess();
         DatabaseManager db = plugin.getDatabaseManager();
-        if (worldFileAccess == null || db == null) {
+        ScanEngine engine = plugin.getScanEngine();
+        if (worldFileAccess == null || db == null || engine == null) {
             return;
         }
 
-        long startedAt = System.currentTimeMillis();
-        int filesProcessed = 0;
-        int recordsUpserted = 0;
-
-        try (Connection connection = db.getConnection()) {
-            connection.setAutoCommit(false);
-
-            for (World world : worldFileAccess.getWorlds()) {
-                File advDir = worldFileAccess.getAdvancementsDirectory(world);
-                if (advDir.isDirectory()) {
-                    File[] files = advDir.listFiles((dir, name) -> name.toLowerCase().endsWith(".json"));
-                    if (files != null) {
-                        for (File file : files) {
-                            int changed = processPlayerFile(connection, world, FILE_TYPE_ADVANCEMENTS, file);
-                            if (changed >= 0) {
-                                filesProcessed++;
-                                recordsUpserted += changed;
-                            }
-                        }
-                    }
+        FileSyncIndex index = db.getFileSyncIndex();
+        ScanEngine.Result<SyncResult> run;
+        try {
+            Set<File> dirtyAdvancements = worldFileAccess.drainDirtyFiles(WorldFileAccess.Category.ADVANCEMENTS);
+            Set<File> dirtyStats = worldFileAccess.drainDirtyFiles(WorldFileAccess.Category.STATS);
+            if (fullScan) {
+                dirtyAdvancements = null;
+                dirtyStats = null;
+            }
+            Set<File> advancementsChanges = dirtyAdvancements;
+            Set<File> statsChanges = dirtyStats;
+            run = engine.run("advancements/stats", sink -> {
+                if (advancementsChanges != null) {
+                    discover(index, advancementsChanges, FILE_TYPE_ADVANCEMENTS, sink);
                 }
-
-                File statsDir = worldFileAccess.getStatsDirectory(world);
-                if (statsDir.isDirectory()) {
-                    File[] files = statsDir.listFiles((dir, name) -> name.toLowerCase().endsWith(".json"));
-                    if (files != null) {
-                        for (File file : files) {
-                            int changed = processPlayerFile(connection, world, FILE_TYPE_STATS, file);
-                            if (changed >= 0) {
-                                filesProcessed++;
-                                recordsUpserted += changed;
-                            }
-                        }
+                if (statsChanges != null) {
+                    discover(index, statsChanges, FILE_TYPE_STATS, sink);
+                }
+                for (World world : worldFileAccess.getWorlds()) {
+                    if (advancementsChanges == null) {
+                        discover(index, listJsonFiles(worldFileAccess.getAdvancementsDirectory(world)), FILE_TYPE_ADVANCEMENTS, sink);
+                    }
+                    if (statsChanges == null) {
+                        discover(index, listJsonFiles(worldFileAccess.getStatsDirectory(world)), FILE_TYPE_STATS, sink);
                     }
                 }
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        int inserted = 0;
+        int updated = 0;
+        int deleted = 0;
+        List<SyncResult> changedFiles = new ArrayList<>();
+        for (SyncResult result : run.getResults()) {
+            // committed: later scans can skip this file until it changes again
+            index.put(result.fileType, result.filePath, result.lastModified, result.size, result.lastProcessed);
+            inserted += result.inserted;
+            updated += result.updated;
+            deleted += result.deleted;
+            if (result.changed() > 0) {
+                changedFiles.add(result);
             }
+        }
 
-            connection.commit();
-        } catch (SQLException e) {
-            plugin.getLogger().severe("Failed to scan advancements/stats: " + e.getMessage());
+        if (!changedFiles.isEmpty()) {
+            StringBuilder message = new StringBuilder()
+                    .append("Advancements/Stats scan completed in ").append(run.getElapsedMillis()).append(" ms, ")
+                    .append("files processed=").append(run.getResults().size())
+                    .append(", keys inserted=").append(inserted)
+                    .append(", updated=").append(updated)
+                    .append(", deleted=").append(deleted)
+                    .append(", ").append(run.describeThroughput(inserted + updated + deleted));
+            int shown = Math.min(changedFiles.size(), MAX_LOGGED_FILES);
+            for (int i = 0; i < shown; i++) {
+                SyncResult result = changedFiles.get(i);
+                message.append("\n  ").append(result.filePath)
+                        .append(": +").append(result.inserted)
+                        .append(" ~").append(result.updated)
+                        .append(" -").append(result.deleted);
+            }
+            if (changedFiles.size() > shown) {
+                message.append("\n  ... and ").append(changedFiles.size() - shown).append(" more file(s)");
+            }
+            plugin.getLogger().info(message.toString());
         }
+    }
 
-        long elapsed = System.currentTimeMillis() - startedAt;
-        if (recordsUpserted > 0) {
-            plugin.getLogger().info("Advancements/Stats scan completed in " + elapsed + " ms, " +
-                "files processed=" + filesProcessed + ", records upserted=" + recordsUpserted);
+    private static List<File> listJsonFiles(File dir) {
+        File[] files = dir.isDirectory() ? dir.listFiles((d, name) -> name.toLowerCase().endsWith(".json")) : null;
+        return files != null ? Arrays.asList(files) : Collections.<File>emptyList();
+    }
+
+    private void discover(FileSyncIndex index,
+                          Collection<File> files,
+                          String fileType,
+                          ScanEngine.Sink<SyncResult> sink) throws InterruptedException {
+        for (File file : files) {
+            if (!file.getName().toLowerCase().endsWith(".json") || !file.isFile()) {
+                continue;
+            }
+            ScanEngine.ScanJob<SyncResult> job = prepareJob(index, fileType, file);
+            if (job != null) {
+                sink.submit(job);
+            }
         }
     }
 
-    private int processPlayerFile(Connection connection, World world, String fileType, File file) {
+    /**
+     * Check one player file against the sync index on the discovery thread. Returns a job that parses the file
+     * on a scan worker and diffs it against the stored rows on the writer, or null when the file is unchanged.
+     */
+    private ScanEngine.ScanJob<SyncResult> prepareJob(FileSyncIndex index, String fileType, File file) {
         long lastModified = file.lastModified();
+        long size = file.length();
         String absolutePath = PathUtils.toServerRelativePath(plugin, file);
-
-        try {
-            if (!shouldProcessFile(connection, fileType, absolutePath, lastModified)) {
-                return 0;
-            }
-        } catch (SQLException e) {
-            plugin.getLogger().severe("Failed to check sync state for file " + absolutePath + ": " + e.getMessage());
-            return -1;
+        if (index.isUnchanged(fileType, absolutePath, lastModified, size)) {
+            return null;
         }
 
         String fileName = file.getName();
-        if (!fileName.toLowerCase().endsWith(".json")) {
-            return 0;
-        }
         String playerUuid = fileName.substring(0, fileName.length() - ".json".length());
 
-        JsonNode root;
-        try (FileInputStream in = new FileInputStream(file)) {
-            root = objectMapper.readTree(in);
-        } catch (IOException e) {
-            plugin.getLogger().severe("Failed to read JSON file " + absolutePath + ": " + e.getMessage());
-            return -1;
+        if (FILE_TYPE_ADVANCEMENTS.equals(fileType)) {
+            return () -> {
+                Map<String, String> parsed;
+                try {
+                    parsed = readAdvancements(file);
+                } catch (IOException e) {
+                    plugin.getLogger().severe("Failed to read JSON file " + absolutePath + ": " + e.getMessage());
+                    return null;
+                }
+                return writer -> {
+                    long now = System.currentTimeMillis();
+                    SyncResult result = syncAdvancements(writer, absolutePath, playerUuid, parsed, now);
+                    upsertFileSyncState(writer, fileType, playerUuid, absolutePath, lastModified, size, now);
+                    result.recordState(fileType, lastModified, size, now);
+                    return result;
+                };
+            };
         }
 
-        int upserted = 0;
-        long now = System.currentTimeMillis();
+        return () -> {
+            Map<String, Long> parsed;
+            try {
+                parsed = readStats(file);
+            } catch (IOException e) {
+                plugin.getLogger().severe("Failed to read JSON file " + absolutePath + ": " + e.getMessage());
+                return null;
+            }
+            return writer -> {
+                long now = System.currentTimeMillis();
+                SyncResult result = syncStats(writer, absolutePath, playerUuid, parsed, now);
+                upsertFileSyncState(writer, fileType, playerUuid, absolutePath, lastModified, size, now);
+                result.recordState(fileType, lastModified, size, now);
+                return result;
+            };
+        };
+    }
 
-        try {
-            if (FILE_TYPE_ADVANCEMENTS.equals(fileType)) {
-                // full-sync this player's advancements: delete stale rows then re-insert current ones
-                deletePlayerAdvancementsForFile(connection, playerUuid);
-
-                Iterator<Map.Entry<String, JsonNode>> fields = root.fields();
-                while (fields.hasNext()) {
-                    Map.Entry<String, JsonNode> entry = fields.next();
-                    String advancementKey = entry.getKey();
-                    String valueJson = entry.getValue().toString();
-                    upsertAdvancement(connection, playerUuid, advancementKey, valueJson, now);
-                    upserted++;
+    /**
+     * Stream an advancements file into advancementKey -> compact JSON of its value.
+     * Each value is copied token by token into one reused buffer instead of materialising a tree.
+     */
+    private Map<String, String> readAdvancements(File file) throws IOException {
+        Map<String, String> out = new HashMap<>();
+        JsonFactory factory = objectMapper.getFactory();
+        try (JsonParser parser = factory.createParser(file)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return out;
+            }
+            StringWriter buffer = new StringWriter(256);
+            try (JsonGenerator generator = factory.createGenerator(buffer)) {
+                generator.setRootValueSeparator(null);
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String advancementKey = parser.getCurrentName();
+                    parser.nextToken();
+                    generator.copyCurrentStructure(parser);
+                    generator.flush();
+                    out.put(advancementKey, buffer.toString());
+                    buffer.getBuffer().setLength(0);
                 }
-            } else if (FILE_TYPE_STATS.equals(fileType)) {
-                // full-sync this player's stats: delete stale rows then re-insert current ones
-                deletePlayerStatsForFile(connection, playerUuid);
+            }
+        }
+        return out;
+    }
 
-                JsonNode statsNode = root.get("stats");
-                if (statsNode != null && statsNode.isObject()) {
-                    upserted += upsertStatsRecursive(connection, playerUuid, statsNode, "", now);
+    /**
+     * Stream a stats file into statKey -> value. Modern files keep counters under "stats"; older flat files
+     * are read from the root. Nested object names are joined with ':' in a single reused key buffer.
+     */
+    private Map<String, Long> readStats(File file) throws IOException {
+        Map<String, Long> rootStats = new HashMap<>();
+        Map<String, Long> nestedStats = null;
+        try (JsonParser parser = objectMapper.getFactory().createParser(file)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return rootStats;
+            }
+            StringBuilder key = new StringBuilder(128);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if ("stats".equals(fieldName) && value == JsonToken.START_OBJECT) {
+                    nestedStats = new HashMap<>();
+                    readStatsObject(parser, key, nestedStats);
                 } else {
-                    upserted += upsertStatsRecursive(connection, playerUuid, root, "", now);
+                    readStatsField(parser, fieldName, value, key, rootStats);
                 }
             }
-
-            upsertFileSyncState(connection, fileType, playerUuid, absolutePath, lastModified, now);
-        } catch (SQLException e) {
-            plugin.getLogger().severe("Failed to upsert data for file " + absolutePath + ": " + e.getMessage());
-            return -1;
         }
-
-        return upserted;
+        return nestedStats != null ? nestedStats : rootStats;
     }
 
-    private int upsertStatsRecursive(Connection connection,
-                                     String playerUuid,
-                                     JsonNode node,
-                                     String prefix,
-                                     long lastUpdated) throws SQLException {
-        if (node == null || !node.isObject()) {
-            return 0;
+    private void readStatsObject(JsonParser parser, StringBuilder key, Map<String, Long> out) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            readStatsField(parser, fieldName, parser.nextToken(), key, out);
         }
+    }
 
-        int upserted = 0;
-        Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
-        while (fields.hasNext()) {
-            Map.Entry<String, JsonNode> entry = fields.next();
-            String fieldKey = entry.getKey();
-            if (prefix.isEmpty() && "DataVersion".equals(fieldKey)) {
-                continue;
-            }
-
-            String statKey = prefix.isEmpty() ? fieldKey : prefix + ":" + fieldKey;
-            JsonNode valueNode = entry.getValue();
-
-            if (valueNode.isObject()) {
-                upserted += upsertStatsRecursive(connection, playerUuid, valueNode, statKey, lastUpdated);
-            } else if (valueNode.isNumber()) {
-                long value = valueNode.asLong(0L);
-                upsertStat(connection, playerUuid, statKey, value, lastUpdated);
-                upserted++;
-            }
+    private void readStatsField(JsonParser parser,
+                                String fieldName,
+                                JsonToken value,
+                                StringBuilder key,
+                                Map<String, Long> out) throws IOException {
+        int mark = key.length();
+        if (mark == 0 && "DataVersion".equals(fieldName)) {
+            parser.skipChildren();
+            return;
         }
-
-        return upserted;
+        if (mark > 0) {
+            key.append(':');
+        }
+        key.append(fieldName);
+        if (value == JsonToken.START_OBJECT) {
+            readStatsObject(parser, key, out);
+        } else if (value == JsonToken.VALUE_NUMBER_INT || value == JsonToken.VALUE_NUMBER_FLOAT) {
+            out.put(key.toString(), parser.getNumberValue().longValue());
+        } else {
+            parser.skipChildren();
+        }
+        key.setLength(mark);
     }
 
-    private boolean shouldProcessFile(Connection connection,
-                                      String fileType,
-                                      String filePath,
-                                      long lastModified) throws SQLException {
+    /**
+     * Bring the stored advancements of one player in line with the parsed file, touching only changed keys.
+     */
+    private SyncResult syncAdvancements(Connection connection,
+                                        String filePath,
+                                        String playerUuid,
+                                        Map<String, String> parsed,
+                                        long lastUpdated) throws SQLException {
+        Map<String, String> stored = new HashMap<>();
         try (PreparedStatement ps = connection.prepareStatement(
-                "SELECT last_modified, last_processed FROM file_sync_state " +
-                        "WHERE file_type = ? AND file_path = ?"
+                "SELECT advancement_key, value FROM player_advancements WHERE player_uuid = ?"
         )) {
-            ps.setString(1, fileType);
-            ps.setString(2, filePath);
+            ps.setString(1, playerUuid);
             try (ResultSet rs = ps.executeQuery()) {
-                if (!rs.next()) {
-                    return true;
+                while (rs.next()) {
+                    byte[] value = rs.getBytes(2);
+                    stored.put(rs.getString(1), value != null ? new String(value, StandardCharsets.UTF_8) : null);
                 }
-                long storedLastModified = rs.getLong("last_modified");
-                long lastProcessed = rs.getLong("last_processed");
-                return storedLastModified != lastModified || lastProcessed < lastModified;
             }
         }
-    }
 
-    private void upsertAdvancement(Connection connection,
-                                   String playerUuid,
-                                   String advancementKey,
-                                   String valueJson,
-                                   long lastUpdated) throws SQLException {
-        try (PreparedStatement ps = connection.prepareStatement(
-                "INSERT INTO player_advancements (player_uuid, advancement_key, value, last_updated) " +
-                        "VALUES (?, ?, ?, ?) " +
-                        "ON CONFLICT(player_uuid, advancement_key) DO UPDATE SET " +
-                        "value = excluded.value, last_updated = excluded.last_updated"
-        )) {
-            ps.setString(1, playerUuid);
-            ps.setString(2, advancementKey);
-            ps.setBytes(3, valueJson.getBytes(StandardCharsets.UTF_8));
-            ps.setLong(4, lastUpdated);
-            ps.executeUpdate();
+        SyncResult result = new SyncResult(filePath);
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO player_advancements (player_uuid, advancement_key, value, last_updated) VALUES (?, ?, ?, ?)");
+             PreparedStatement update = connection.prepareStatement(
+                     "UPDATE player_advancements SET value = ?, last_updated = ? WHERE player_uuid = ? AND advancement_key = ?");
+             PreparedStatement delete = connection.prepareStatement(
+                     "DELETE FROM player_advancements WHERE player_uuid = ? AND advancement_key = ?")) {
+            for (Map.Entry<String, String> entry : parsed.entrySet()) {
+                String key = entry.getKey();
+                byte[] value = entry.getValue().getBytes(StandardCharsets.UTF_8);
+                if (!stored.containsKey(key)) {
+                    insert.setString(1, playerUuid);
+                    insert.setString(2, key);
+                    insert.setBytes(3, value);
+                    insert.setLong(4, lastUpdated);
+                    insert.addBatch();
+                    result.inserted++;
+                } else if (!entry.getValue().equals(stored.get(key))) {
+                    update.setBytes(1, value);
+                    update.setLong(2, lastUpdated);
+                    update.setString(3, playerUuid);
+                    update.setString(4, key);
+                    update.addBatch();
+                    result.updated++;
+                }
+            }
+            for (String key : stored.keySet()) {
+                if (!parsed.containsKey(key)) {
+                    delete.setString(1, playerUuid);
+                    delete.setString(2, key);
+                    delete.addBatch();
+                    result.deleted++;
+                }
+            }
+            executeIfBatched(insert, result.inserted);
+            executeIfBatched(update, result.updated);
+            executeIfBatched(delete, result.deleted);
         }
+        return result;
     }
 
-    private void upsertStat(Connection connection,
-                            String playerUuid,
-                            String statKey,
-                            long value,
-                            long lastUpdated) throws SQLException {
+    /**
+     * Bring the stored stats of one player in line with the parsed file, touching only changed keys.
+     */
+    private SyncResult syncStats(Connection connection,
+                                 String filePath,
+                                 String playerUuid,
+                                 Map<String, Long> parsed,
+                                 long lastUpdated) throws SQLException {
+        Map<String, Long> stored = new HashMap<>();
         try (PreparedStatement ps = connection.prepareStatement(
-                "INSERT INTO player_stats (player_uuid, stat_key, value, last_updated) " +
-                        "VALUES (?, ?, ?, ?) " +
-                        "ON CONFLICT(player_uuid, stat_key) DO UPDATE SET " +
-                        "value = excluded.value, last_updated = excluded.last_updated"
+                "SELECT stat_key, value FROM player_stats WHERE player_uuid = ?"
         )) {
             ps.setString(1, playerUuid);
-            ps.setString(2, statKey);
-            ps.setLong(3, value);
-            ps.setLong(4, lastUpdated);
-            ps.executeUpdate();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    stored.put(rs.getString(1), rs.getLong(2));
+                }
+            }
         }
-    }
 
-    private void deletePlayerAdvancementsForFile(Connection connection,
-                                                 String playerUuid) throws SQLException {
-        try (PreparedStatement ps = connection.prepareStatement(
-                "DELETE FROM player_advancements WHERE player_uuid = ?"
-        )) {
-            ps.setString(1, playerUuid);
-            ps.executeUpdate();
+        SyncResult result = new SyncResult(filePath);
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO player_stats (player_uuid, stat_key, value, last_updated) VALUES (?, ?, ?, ?)");
+             PreparedStatement update = connection.prepareStatement(
+                     "UPDATE player_stats SET value = ?, last_updated = ? WHERE player_uuid = ? AND stat_key = ?");
+             PreparedStatement delete = connection.prepareStatement(
+                     "DELETE FROM player_stats WHERE player_uuid = ? AND stat_key = ?")) {
+            for (Map.Entry<String, Long> entry : parsed.entrySet()) {
+                String key = entry.getKey();
+                long value = entry.getValue();
+                Long current = stored.get(key);
+                if (current == null) {
+                    insert.setString(1, playerUuid);
+                    insert.setString(2, key);
+                    insert.setLong(3, value);
+                    insert.setLong(4, lastUpdated);
+                    insert.addBatch();
+                    result.inserted++;
+                } else if (current != value) {
+                    update.setLong(1, value);
+                    update.setLong(2, lastUpdated);
+                    update.setString(3, playerUuid);
+                    update.setString(4, key);
+                    update.addBatch();
+                    result.updated++;
+                }
+            }
+            for (String key : stored.keySet()) {
+                if (!parsed.containsKey(key)) {
+                    delete.setString(1, playerUuid);
+                    delete.setString(2, key);
+                    delete.addBatch();
+                    result.deleted++;
+                }
+            }
+            executeIfBatched(insert, result.inserted);
+            executeIfBatched(update, result.updated);
+            executeIfBatched(delete, result.deleted);
         }
+        return result;
     }
 
-    private void deletePlayerStatsForFile(Connection connection,
-                                          String playerUuid) throws SQLException {
-        try (PreparedStatement ps = connection.prepareStatement(
-                "DELETE FROM player_stats WHERE player_uuid = ?"
-        )) {
-            ps.setString(1, playerUuid);
-            ps.executeUpdate();
+    private static void executeIfBatched(PreparedStatement ps, int batched) throws SQLException {
+        if (batched > 0) {
+            ps.executeBatch();
         }
     }
 
@@ -269,20 +422,48 @@ public class AdvancementsAndStatsScanner {
                                      String playerUuid,
                                      String filePath,
                                      long lastModified,
+                                     long fileSize,
                                      long lastProcessed) throws SQLException {
         try (PreparedStatement ps = connection.prepareStatement(
-                "INSERT INTO file_sync_state (file_type, player_uuid, file_path, last_modified, last_processed) " +
-                        "VALUES (?, ?, ?, ?, ?) " +
+                "INSERT INTO file_sync_state (file_type, player_uuid, file_path, last_modified, file_size, last_processed) " +
+                        "VALUES (?, ?, ?, ?, ?, ?) " +
                         "ON CONFLICT(file_type, file_path) DO UPDATE SET " +
-                        "last_modified = excluded.last_modified, last_processed = excluded.last_processed"
+                        "last_modified = excluded.last_modified, file_size = excluded.file_size, " +
+                        "last_processed = excluded.last_processed"
         )) {
             ps.setString(1, fileType);
             ps.setString(2, playerUuid);
             ps.setString(3, filePath);
             ps.setLong(4, lastModified);
-            ps.setLong(5, lastProcessed);
+            ps.setLong(5, fileSize);
+            ps.setLong(6, lastProcessed);
             ps.executeUpdate();
         }
     }
-}
 
+    private static final class SyncResult {
+        private final String filePath;
+        private int inserted;
+        private int updated;
+        private int deleted;
+        private String fileType;
+        private long lastModified;
+        private long size;
+        private long lastProcessed;
+
+        private SyncResult(String filePath) {
+            this.filePath = filePath;
+        }
+
+        private void recordState(String fileType, long lastModified, long size, long lastProcessed) {
+            this.fileType = fileType;
+            this.lastModified = lastModified;
+            this.size = size;
+            this.lastProcessed = lastProcessed;
+        }
+
+        private int changed() {
+            return inserted + updated + deleted;
+        }
+    }
+}
@@ -2,18 +2,22 @@ package com.hydroline.beacon.task;
 
 import com.hydroline.beacon.BeaconPlugin;
 import com.hydroline.beacon.storage.DatabaseManager;
+import com.hydroline.beacon.storage.DatabaseWriteQueue;
+import com.hydroline.beacon.storage.FileSyncIndex;
 import com.hydroline.beacon.world.WorldFileAccess;
+import com.hydroline.beacon.util.MtrTimestamps;
 import com.hydroline.beacon.util.PathUtils;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
 import org.bukkit.World;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
 import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -24,9 +28,17 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
 
 public class MtrLogsScanner {
 
+    private static final int MAX_CHUNK_BYTES = 8 * 1024 * 1024;
+    private static final int HEAD_CHECKSUM_BYTES = 4096;
+
     private final BeaconPlugin plugin;
 
     public MtrLogsScanner(BeaconPlugin plugin) {
@@ -34,67 +46,110 @@ public class MtrLogsScanner {
     }
 
     public void scanOnce() {
+        scanOnce(true);
+    }
+
+    /**
+     * @param fullScan list every known logs directory of each world; otherwise only CSVs reported by the watch service
+     */
+    public void scanOnce(boolean fullScan) {
         WorldFileAccess worldFileAccess = plugin.getWorldFileAccess();
         DatabaseManager db = plugin.getDatabaseManager();
-        if (worldFileAccess == null || db == null) {
+        ScanEngine engine = plugin.getScanEngine();
+        if (worldFileAccess == null || db == null || engine == null) {
             return;
         }
 
-        long startedAt = System.currentTimeMillis();
-        int filesProcessed = 0;
-        int rowsInserted = 0;
-
-        try (Connection connection = db.getConnection()) {
-            connection.setAutoCommit(false);
-
-            for (World world : worldFileAccess.getWorlds()) {
-                List<File> csvFiles = worldFileAccess.findMtrLogFiles(world);
-                if (csvFiles.isEmpty()) {
-                    continue;
+        FileSyncIndex index = db.getFileSyncIndex();
+        ScanEngine.Result<IngestResult> run;
+        AtomicLong discoveryNanos = new AtomicLong();
+        try {
+            Set<File> dirty = worldFileAccess.drainDirtyFiles(WorldFileAccess.Category.MTR_LOGS);
+            Set<File> changes = fullScan ? null : dirty;
+            run = engine.run("MTR logs", sink -> {
+                if (changes != null) {
+                    // watched logs directories: the touched CSVs are exactly the ones being appended to
+                    for (File file : changes) {
+                        if (!file.getName().toLowerCase().endsWith(".csv") || !file.isFile()) {
+                            continue;
+                        }
+                        World world = worldFileAccess.findWorldOf(file);
+                        if (world != null) {
+                            submitIfChanged(db, index, sink, file, worldFileAccess.deriveDimensionContext(world, file));
+                        }
+                    }
+                    return;
                 }
-
-                Map<String, List<File>> byContext = groupByContext(worldFileAccess, world, csvFiles);
-                for (Map.Entry<String, List<File>> entry : byContext.entrySet()) {
-                    String context = entry.getKey();
-                    List<File> files = entry.getValue();
-                    if (files.isEmpty()) {
+                for (World world : worldFileAccess.getWorlds()) {
+                    long discoveryStartedAt = System.nanoTime();
+                    List<File> csvFiles = worldFileAccess.findMtrLogFiles(world);
+                    discoveryNanos.addAndGet(System.nanoTime() - discoveryStartedAt);
+                    if (csvFiles.isEmpty()) {
                         continue;
                     }
 
-                    boolean hasExisting = hasAnyFileForContext(connection, context);
-                    files.sort(Comparator.comparingLong(File::lastModified).reversed());
+                    Map<String, List<File>> byContext = groupByContext(worldFileAccess, world, csvFiles);
+                    for (Map.Entry<String, List<File>> entry : byContext.entrySet()) {
+                        String context = entry.getKey();
+                        List<File> files = entry.getValue();
+                        if (files.isEmpty()) {
+                            continue;
+                        }
+
+                        boolean hasExisting = index.hasMtrContext(context);
+                        files.sort(Comparator.comparingLong(File::lastModified).reversed());
 
-                    List<File> toProcess = new ArrayList<>();
-                    if (hasExisting) {
-                        for (int i = 0; i < files.size() && i < 2; i++) {
-                            toProcess.add(files.get(i));
+                        List<File> toProcess = new ArrayList<>();
+                        if (hasExisting) {
+                            for (int i = 0; i < files.size() && i < 2; i++) {
+                                toProcess.add(files.get(i));
+                            }
+                        } else {
+                            toProcess.addAll(files);
                         }
-                    } else {
-                        toProcess.addAll(files);
-                    }
 
-                    for (File file : toProcess) {
-                        int inserted = processCsvFile(connection, file, context);
-                        if (inserted >= 0) {
-                            filesProcessed++;
-                            rowsInserted += inserted;
+                        for (File file : toProcess) {
+                            submitIfChanged(db, index, sink, file, context);
                         }
                     }
                 }
-            }
-
-            connection.commit();
-        } catch (SQLException e) {
-            plugin.getLogger().severe("Failed to scan MTR logs: " + e.getMessage());
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
         }
 
-        long elapsed = System.currentTimeMillis() - startedAt;
+        int rowsInserted = 0;
+        for (IngestResult result : run.getResults()) {
+            if (result == null) {
+                continue; // another scan committed this file first
+            }
+            // committed: later scans can skip this file until it grows or changes
+            index.putMtr(result.path, result.context, result.lastModified, result.examinedSize, result.lastProcessed);
+            rowsInserted += result.rows;
+        }
         if (rowsInserted > 0) {
-            plugin.getLogger().info("MTR logs scan completed in " + elapsed + " ms, " +
-                "files processed=" + filesProcessed + ", rows inserted=" + rowsInserted);
+            plugin.getLogger().info("MTR logs scan completed in " + run.getElapsedMillis() + " ms, " +
+                "files processed=" + run.getResults().size() + ", rows inserted=" + rowsInserted +
+                ", discovery=" + TimeUnit.NANOSECONDS.toMillis(discoveryNanos.get()) + " ms" +
+                ", " + run.describeThroughput(rowsInserted));
         }
     }
 
+    private void submitIfChanged(DatabaseManager db,
+                                 FileSyncIndex index,
+                                 ScanEngine.Sink<IngestResult> sink,
+                                 File file,
+                                 String context) throws InterruptedException {
+        long lastModified = file.lastModified();
+        long size = file.length();
+        String path = PathUtils.toServerRelativePath(plugin, file);
+        if (index.isUnchanged(FileSyncIndex.TYPE_MTR, path, lastModified, size)) {
+            return;
+        }
+        sink.submit(() -> parseAppended(db, file, path, context, lastModified, size));
+    }
+
     private Map<String, List<File>> groupByContext(WorldFileAccess worldFileAccess,
                                                    World world,
                                                    List<File> csvFiles) {
@@ -106,50 +161,109 @@ public class MtrLogsScanner {
         return byContext;
     }
 
-    private boolean hasAnyFileForContext(Connection connection, String context) throws SQLException {
-        try (PreparedStatement ps = connection.prepareStatement(
-                "SELECT 1 FROM mtr_files WHERE dimension_context = ? LIMIT 1"
-        )) {
-            ps.setString(1, context);
-            try (ResultSet rs = ps.executeQuery()) {
-                return rs.next();
-            }
-        }
-    }
-
-    private int processCsvFile(Connection connection, File file, String context) {
-        long lastModified = file.lastModified();
-        String path = PathUtils.toServerRelativePath(plugin, file);
-
-        try {
-            if (!shouldProcessFile(connection, path, lastModified)) {
-                return 0;
-            }
+    /**
+     * Parse the lines appended to one CSV since the last committed offset into a write for the database writer.
+     * Runs on a scan worker. A file that shrank, whose leading bytes changed (rotated in place) or that was
+     * ingested before offsets were tracked has its rows deleted and is read again from the start.
+     * Returns null when the file is already up to date or could not be read. The write re-checks the committed
+     * state on the writer connection and does nothing (yielding null) when an overlapping scan has moved it since
+     * the chunk was parsed, so the same bytes are never inserted twice.
+     */
+    private DatabaseWriteQueue.WriteCommand<IngestResult> parseAppended(DatabaseManager db,
+                                                                       File file,
+                                                                       String path,
+                                                                       String context,
+                                                                       long lastModified,
+                                                                       long size) {
+        MtrFileState state;
+        try (Connection connection = db.getReadConnection()) {
+            state = loadFileState(connection, path);
         } catch (SQLException e) {
             plugin.getLogger().severe("Failed to check MTR file state for " + path + ": " + e.getMessage());
-            return -1;
+            return null;
+        }
+        if (state != null && state.isUpToDate(lastModified, size)) {
+            return null;
         }
 
-        int inserted = 0;
-        long now = System.currentTimeMillis();
+        long offset = 0L;
+        long recordsBefore = 0L;
+        boolean resetRows = false;
+        List<CSVRecord> records = new ArrayList<>();
+        long committedOffset;
+        long examinedSize;
+        long headChecksum;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if (state != null) {
+                if (state.canResume(size, headChecksum(raf, state.committedOffset))) {
+                    offset = state.committedOffset;
+                    recordsBefore = state.committedRecords;
+                } else {
+                    resetRows = true;
+                    if (state.committedOffset != null) {
+                        plugin.getLogger().info("MTR log " + path + " was truncated or replaced, re-ingesting it");
+                    }
+                }
+            }
 
-        try (BufferedReader reader = new BufferedReader(
-                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            byte[] chunk = readChunk(raf, offset, size - offset, MAX_CHUNK_BYTES);
+            int complete = completeRecordsLength(chunk);
+            if (complete == 0 && chunk.length == MAX_CHUNK_BYTES && size - offset > MAX_CHUNK_BYTES) {
+                // a single record larger than the chunk; take the rest of the file
+                chunk = readChunk(raf, offset, size - offset, Integer.MAX_VALUE);
+                complete = completeRecordsLength(chunk);
+            }
 
-            CSVParser parser = CSVFormat.DEFAULT
-                    .withFirstRecordAsHeader()
-                    .withIgnoreEmptyLines()
-                    .parse(reader);
+            if (complete > 0) {
+                CSVFormat format = offset == 0L
+                        ? CSVFormat.DEFAULT.withFirstRecordAsHeader().withIgnoreEmptyLines()
+                        : CSVFormat.DEFAULT.withHeader(readHeader(raf)).withIgnoreEmptyLines();
+                try (CSVParser parser = format.parse(new InputStreamReader(
+                        new ByteArrayInputStream(chunk, 0, complete), StandardCharsets.UTF_8))) {
+                    for (CSVRecord record : parser) {
+                        records.add(record);
+                    }
+                }
+            }
+            committedOffset = offset + complete;
+            // recorded as file_size: a partial trailing line is not re-read until the file grows,
+            // while a chunk cut short by MAX_CHUNK_BYTES is continued on the next scan
+            examinedSize = offset + chunk.length;
+            headChecksum = headChecksum(raf, committedOffset);
+        } catch (IOException | RuntimeException e) {
+            plugin.getLogger().severe("Failed to read MTR CSV file " + path + ": " + e.getMessage());
+            return null;
+        }
 
-            try (PreparedStatement ps = connection.prepareStatement(
+        final long firstLine = recordsBefore;
+        final boolean reset = resetRows;
+        final Long parsedFromOffset = state != null ? state.committedOffset : null;
+        final Long parsedFromChecksum = state != null ? state.headChecksum : null;
+        final boolean parsedFromRow = state != null;
+        return writer -> {
+            MtrFileState current = loadFileState(writer, path);
+            if ((current != null) != parsedFromRow
+                    || (current != null && (!Objects.equals(current.committedOffset, parsedFromOffset)
+                    || !Objects.equals(current.headChecksum, parsedFromChecksum)))) {
+                return null;
+            }
+            if (reset) {
+                try (PreparedStatement ps = writer.prepareStatement("DELETE FROM mtr_logs WHERE source_file_path = ?")) {
+                    ps.setString(1, path);
+                    ps.executeUpdate();
+                }
+            }
+            try (PreparedStatement ps = writer.prepareStatement(
                     "INSERT INTO mtr_logs (" +
                             "timestamp, player_name, player_uuid, class_name, entry_id, entry_name, " +
                             "position, change_type, old_data, new_data, " +
-                            "source_file_path, source_line, dimension_context" +
-                            ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)"
+                            "source_file_path, source_line, dimension_context, timestamp_ms" +
+                            ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)"
             )) {
-                for (CSVRecord record : parser) {
-                    ps.setString(1, record.get("Timestamp"));
+                for (CSVRecord record : records) {
+                    String timestamp = record.get("Timestamp");
+                    Long timestampMs = MtrTimestamps.parseEpochMillis(timestamp);
+                    ps.setString(1, timestamp);
                     ps.setString(2, record.get("Player Name"));
                     ps.setString(3, record.get("Player UUID"));
                     ps.setString(4, record.get("Class"));
@@ -160,65 +274,189 @@ public class MtrLogsScanner {
                     ps.setString(9, record.get("Old Data"));
                     ps.setString(10, record.get("New Data"));
                     ps.setString(11, path);
-                    ps.setLong(12, record.getRecordNumber());
+                    ps.setLong(12, firstLine + record.getRecordNumber());
                     ps.setString(13, context);
+                    if (timestampMs != null) {
+                        ps.setLong(14, timestampMs);
+                    } else {
+                        ps.setNull(14, java.sql.Types.BIGINT);
+                    }
                     ps.addBatch();
-                    inserted++;
                 }
                 ps.executeBatch();
             }
 
-            upsertMtrFileState(connection, path, lastModified, now, context);
-        } catch (IOException e) {
-            plugin.getLogger().severe("Failed to read MTR CSV file " + path + ": " + e.getMessage());
-            return -1;
-        } catch (SQLException e) {
-            plugin.getLogger().severe("Failed to insert MTR log rows for " + path + ": " + e.getMessage());
-            return -1;
+            long now = System.currentTimeMillis();
+            upsertMtrFileState(writer, path, lastModified, now, context,
+                    committedOffset, firstLine + records.size(), examinedSize, headChecksum);
+            return new IngestResult(path, context, lastModified, examinedSize, now, records.size());
+        };
+    }
+
+    private static byte[] readChunk(RandomAccessFile raf, long offset, long available, int maxBytes) throws IOException {
+        int length = (int) Math.max(0L, Math.min(available, maxBytes));
+        byte[] chunk = new byte[length];
+        raf.seek(offset);
+        raf.readFully(chunk);
+        return chunk;
+    }
+
+    /**
+     * Length of the prefix made of whole CSV records, i.e. up to the last line break outside quotes.
+     * Quotes and line breaks are ASCII, so scanning raw UTF-8 bytes is safe.
+     */
+    private static int completeRecordsLength(byte[] chunk) {
+        boolean quoted = false;
+        int complete = 0;
+        for (int i = 0; i < chunk.length; i++) {
+            byte b = chunk[i];
+            if (b == '"') {
+                quoted = !quoted;
+            } else if (b == '\n' && !quoted) {
+                complete = i + 1;
+            }
         }
+        return complete;
+    }
 
-        return inserted;
+    private static String[] readHeader(RandomAccessFile raf) throws IOException {
+        raf.seek(0L);
+        String line = raf.readLine();
+        if (line == null) {
+            throw new IOException("missing CSV header");
+        }
+        // RandomAccessFile.readLine decodes bytes as Latin-1; the MTR header is plain ASCII
+        try (CSVParser parser = CSVFormat.DEFAULT.parse(new StringReader(line))) {
+            for (CSVRecord header : parser) {
+                String[] names = new String[header.size()];
+                for (int i = 0; i < names.length; i++) {
+                    names[i] = header.get(i);
+                }
+                return names;
+            }
+        }
+        throw new IOException("missing CSV header");
+    }
+
+    /**
+     * CRC32 of the first bytes already ingested, used to notice a file that was replaced under the same name.
+     */
+    private static long headChecksum(RandomAccessFile raf, Long committedOffset) throws IOException {
+        CRC32 crc = new CRC32();
+        if (committedOffset == null || committedOffset <= 0L) {
+            return crc.getValue();
+        }
+        int length = (int) Math.min(Math.min(committedOffset, raf.length()), HEAD_CHECKSUM_BYTES);
+        byte[] head = new byte[length];
+        raf.seek(0L);
+        raf.readFully(head);
+        crc.update(head, 0, length);
+        return crc.getValue();
     }
 
-    private boolean shouldProcessFile(Connection connection,
-                                      String filePath,
-                                      long lastModified) throws SQLException {
+    private MtrFileState loadFileState(Connection connection, String filePath) throws SQLException {
         try (PreparedStatement ps = connection.prepareStatement(
-                "SELECT last_modified, processed FROM mtr_files WHERE file_path = ?"
+                "SELECT last_modified, processed, committed_offset, committed_records, file_size, head_checksum " +
+                        "FROM mtr_files WHERE file_path = ?"
         )) {
             ps.setString(1, filePath);
             try (ResultSet rs = ps.executeQuery()) {
                 if (!rs.next()) {
-                    return true;
+                    return null;
                 }
-                long storedLastModified = rs.getLong("last_modified");
-                int processed = rs.getInt("processed");
-                return storedLastModified != lastModified || processed == 0;
+                MtrFileState state = new MtrFileState();
+                state.lastModified = rs.getLong("last_modified");
+                state.processed = rs.getInt("processed") != 0;
+                state.committedOffset = nullableLong(rs, "committed_offset");
+                state.committedRecords = nullableLong(rs, "committed_records");
+                state.fileSize = nullableLong(rs, "file_size");
+                state.headChecksum = nullableLong(rs, "head_checksum");
+                return state;
             }
         }
     }
 
+    private static Long nullableLong(ResultSet rs, String column) throws SQLException {
+        long value = rs.getLong(column);
+        return rs.wasNull() ? null : value;
+    }
+
     private void upsertMtrFileState(Connection connection,
                                     String filePath,
                                     long lastModified,
                                     long lastProcessed,
-                                    String context) throws SQLException {
+                                    String context,
+                                    long committedOffset,
+                                    long committedRecords,
+                                    long fileSize,
+                                    long headChecksum) throws SQLException {
         try (PreparedStatement ps = connection.prepareStatement(
                 "INSERT INTO mtr_files (" +
-                        "file_path, last_modified, last_processed, processed, dimension_context" +
-                        ") VALUES (?, ?, ?, 1, ?) " +
+                        "file_path, last_modified, last_processed, processed, dimension_context, " +
+                        "committed_offset, committed_records, file_size, head_checksum" +
+                        ") VALUES (?, ?, ?, 1, ?, ?, ?, ?, ?) " +
                         "ON CONFLICT(file_path) DO UPDATE SET " +
                         "last_modified = excluded.last_modified, " +
                         "last_processed = excluded.last_processed, " +
                         "processed = excluded.processed, " +
-                        "dimension_context = excluded.dimension_context"
+                        "dimension_context = excluded.dimension_context, " +
+                        "committed_offset = excluded.committed_offset, " +
+                        "committed_records = excluded.committed_records, " +
+                        "file_size = excluded.file_size, " +
+                        "head_checksum = excluded.head_checksum"
         )) {
             ps.setString(1, filePath);
             ps.setLong(2, lastModified);
             ps.setLong(3, lastProcessed);
             ps.setString(4, context);
+            ps.setLong(5, committedOffset);
+            ps.setLong(6, committedRecords);
+            ps.setLong(7, fileSize);
+            ps.setLong(8, headChecksum);
             ps.executeUpdate();
         }
     }
-}
 
+    private static final class MtrFileState {
+        private long lastModified;
+        private boolean processed;
+        private Long committedOffset;
+        private Long committedRecords;
+        private Long fileSize;
+        private Long headChecksum;
+
+        private boolean isUpToDate(long currentLastModified, long currentSize) {
+            return processed
+                    && committedOffset != null
+                    && fileSize != null
+                    && lastModified == currentLastModified
+                    && fileSize == currentSize;
+        }
+
+        private boolean canResume(long currentSize, long currentHeadChecksum) {
+            return committedOffset != null
+                    && committedRecords != null
+                    && headChecksum != null
+                    && committedOffset <= currentSize
+                    && headChecksum == currentHeadChecksum;
+        }
+    }
+
+    private static final class IngestResult {
+        private final String path;
+        private final String context;
+        private final long lastModified;
+        private final long examinedSize;
+        private final long lastProcessed;
+        private final int rows;
+
+        private IngestResult(String path, String context, long lastModified, long examinedSize, long lastProcessed, int rows) {
+            this.path = path;
+            this.context = context;
+            this.lastModified = lastModified;
+            this.examinedSize = examinedSize;
+            this.lastProcessed = lastProcessed;
+            this.rows = rows;
+        }
+    }
+}
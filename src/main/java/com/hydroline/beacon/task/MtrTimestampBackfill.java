@@ -0,0 +1,102 @@
+package com.hydroline.beacon.task;
+
+import com.hydroline.beacon.BeaconPlugin;
+import com.hydroline.beacon.storage.DatabaseManager;
+import com.hydroline.beacon.util.MtrTimestamps;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fills {@code mtr_logs.timestamp_ms} for rows ingested before the column existed.
+ * Walks the table in id order in small batches so the writer queue is never blocked for long.
+ * Rows whose timestamp cannot be parsed keep a NULL {@code timestamp_ms} and never match date filters.
+ */
+public class MtrTimestampBackfill implements Runnable {
+
+    private static final int BATCH_SIZE = 2000;
+
+    private final BeaconPlugin plugin;
+    private volatile boolean cancelled;
+
+    public MtrTimestampBackfill(BeaconPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    @Override
+    public void run() {
+        DatabaseManager db = plugin.getDatabaseManager();
+        if (db == null) {
+            return;
+        }
+
+        long startedAt = System.currentTimeMillis();
+        long lastId = 0L;
+        int updated = 0;
+        int unparseable = 0;
+        try {
+            while (!cancelled) {
+                List<long[]> batch = new ArrayList<>(BATCH_SIZE);
+                long batchLastId = lastId;
+                try (Connection connection = db.getReadConnection();
+                     PreparedStatement ps = connection.prepareStatement(
+                             "SELECT id, timestamp FROM mtr_logs WHERE id > ? AND timestamp_ms IS NULL ORDER BY id LIMIT ?")) {
+                    ps.setLong(1, lastId);
+                    ps.setInt(2, BATCH_SIZE);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            batchLastId = rs.getLong(1);
+                            Long millis = MtrTimestamps.parseEpochMillis(rs.getString(2));
+                            if (millis == null) {
+                                unparseable++;
+                            } else {
+                                batch.add(new long[]{batchLastId, millis});
+                            }
+                        }
+                    }
+                }
+                if (batchLastId == lastId) {
+                    break;
+                }
+                lastId = batchLastId;
+                if (!batch.isEmpty()) {
+                    updated += db.submitWrite(connection -> applyBatch(connection, batch)).get(60, TimeUnit.SECONDS);
+                }
+            }
+        } catch (Exception e) {
+            plugin.getLogger().warning("MTR timestamp backfill stopped after " + updated + " row(s): " + e.getMessage());
+            return;
+        }
+
+        if (updated > 0 || unparseable > 0) {
+            plugin.getLogger().info("MTR timestamp backfill updated " + updated + " row(s) ("
+                    + unparseable + " unparseable) in " + (System.currentTimeMillis() - startedAt) + " ms"
+                    + (cancelled ? " before being cancelled" : ""));
+        }
+    }
+
+    private static int applyBatch(Connection connection, List<long[]> batch) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(
+                "UPDATE mtr_logs SET timestamp_ms = ? WHERE id = ? AND timestamp_ms IS NULL")) {
+            for (long[] row : batch) {
+                ps.setLong(1, row[1]);
+                ps.setLong(2, row[0]);
+                ps.addBatch();
+            }
+            int total = 0;
+            for (int count : ps.executeBatch()) {
+                total += Math.max(count, 0);
+            }
+            return total;
+        }
+    }
+}
@@ -1,166 +1,242 @@
-package com.hydroline.beacon.task;
-
-import com.hydroline.beacon.BeaconPlugin;
-import com.hydroline.beacon.storage.DatabaseManager;
-import com.hydroline.beacon.util.PathUtils;
-import com.hydroline.beacon.util.NbtUtils;
-import com.hydroline.beacon.world.WorldFileAccess;
-import org.bukkit.World;
-
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.SQLException;
-import java.util.List;
-import java.util.Map;
-
-public class NbtIdentityScanner {
-
-    private final BeaconPlugin plugin;
-
-    public NbtIdentityScanner(BeaconPlugin plugin) {
-        this.plugin = plugin;
-    }
-
-    public void scanOnce() {
-        WorldFileAccess wfa = plugin.getWorldFileAccess();
-        DatabaseManager db = plugin.getDatabaseManager();
-        if (wfa == null || db == null) return;
-
-        long started = System.currentTimeMillis();
-        int filesProcessed = 0;
-        int upserts = 0;
-
-        try (Connection conn = db.getConnection()) {
-            conn.setAutoCommit(false);
-            List<World> worlds = wfa.getWorlds();
-            for (World world : worlds) {
-                File dir = new File(world.getWorldFolder(), "playerdata");
-                if (!dir.isDirectory()) continue;
-                File[] files = dir.listFiles((d, name) -> name.toLowerCase().endsWith(".dat"));
-                if (files == null) continue;
-                for (File f : files) {
-                    String uuid = stripDat(f.getName());
-                    if (uuid == null || uuid.length() < 32) continue;
-                    filesProcessed++;
-                    String playerName = null;
-                    Long firstPlayed = null;
-                    Long lastPlayed = null;
-                    Map<String, Object> nbt = null;
-                    try (FileInputStream in = new FileInputStream(f)) {
-                        nbt = NbtUtils.readPlayerDatToMap(in);
-                        // Common CraftBukkit path: bukkit -> lastKnownName
-                        Object bkt = nbt.get("bukkit");
-                        if (bkt instanceof Map) {
-                            Object lkn = ((Map<?, ?>) bkt).get("lastKnownName");
-                            if (lkn instanceof String) {
-                                playerName = (String) lkn;
-                            }
-                            if (firstPlayed == null) {
-                                firstPlayed = asLong(((Map<?, ?>) bkt).get("firstPlayed"));
-                            }
-                            if (lastPlayed == null) {
-                                lastPlayed = asLong(((Map<?, ?>) bkt).get("lastPlayed"));
-                            }
-                        }
-                        if (firstPlayed == null) {
-                            firstPlayed = asLong(nbt.get("firstPlayed"));
-                        }
-                        if (lastPlayed == null) {
-                            lastPlayed = asLong(nbt.get("lastPlayed"));
-                        }
-                    } catch (IOException e) {
-                        plugin.getLogger().warning("Failed to parse NBT for " + PathUtils.toServerRelativePath(plugin, f) + ": " + e.getMessage());
-                    }
-
-                    long now = System.currentTimeMillis();
-
-                    if (playerName != null && !playerName.isEmpty()) {
-                        upsertIdentity(conn, uuid, playerName, firstPlayed, lastPlayed, now);
-                        upserts++;
-                    }
-
-                    // Keep raw NBT JSON cache in sync with current playerdata
-                    if (nbt != null) {
-                        try {
-                            upsertPlayerNbtCache(conn, uuid, NbtUtils.toJson(nbt), now);
-                        } catch (IOException e) {
-                            plugin.getLogger().warning("Failed to serialize NBT JSON for " + uuid + ": " + e.getMessage());
-                        }
-                    }
-                }
-            }
-            conn.commit();
-        } catch (SQLException e) {
-            plugin.getLogger().severe("Failed to scan player identities: " + e.getMessage());
-        }
-
-        long elapsed = System.currentTimeMillis() - started;
-        if (upserts > 0) {
-            plugin.getLogger().info("NBT identity scan completed in " + elapsed + " ms, files=" + filesProcessed + ", upserts=" + upserts);
-        }
-    }
-
-    private void upsertIdentity(Connection conn, String uuid, String name, Long firstPlayed, Long lastPlayed, long now) throws SQLException {
-        try (PreparedStatement ps = conn.prepareStatement(
-                "INSERT INTO player_identities (player_uuid, player_name, first_played, last_played, last_updated) VALUES (?, ?, ?, ?, ?) " +
-                        "ON CONFLICT(player_uuid) DO UPDATE SET " +
-                        "player_name=excluded.player_name, " +
-                        "first_played=COALESCE(excluded.first_played, player_identities.first_played), " +
-                        "last_played=COALESCE(excluded.last_played, player_identities.last_played), " +
-                        "last_updated=excluded.last_updated"
-        )) {
-            ps.setString(1, uuid);
-            ps.setString(2, name);
-            if (firstPlayed != null) {
-                ps.setLong(3, firstPlayed);
-            } else {
-                ps.setNull(3, java.sql.Types.BIGINT);
-            }
-            if (lastPlayed != null) {
-                ps.setLong(4, lastPlayed);
-            } else {
-                ps.setNull(4, java.sql.Types.BIGINT);
-            }
-            ps.setLong(5, now);
-            ps.executeUpdate();
-        }
-    }
-
-    private void upsertPlayerNbtCache(Connection conn, String uuid, String rawJson, long now) throws SQLException {
-        try (PreparedStatement ps = conn.prepareStatement(
-                "INSERT INTO player_nbt_cache (player_uuid, raw_json, cached_at) VALUES (?, ?, ?) " +
-                        "ON CONFLICT(player_uuid) DO UPDATE SET " +
-                        "raw_json = excluded.raw_json, " +
-                        "cached_at = excluded.cached_at"
-        )) {
-            ps.setString(1, uuid);
-            ps.setString(2, rawJson);
-            ps.setLong(3, now);
-            ps.executeUpdate();
-        }
-    }
-
-    private Long asLong(Object value) {
-        if (value instanceof Number) {
-            return ((Number) value).longValue();
-        }
-        if (value instanceof String) {
-            try {
-                return Long.parseLong((String) value);
-            } catch (NumberFormatException ignored) {
-            }
-        }
-        return null;
-    }
-
-    private String stripDat(String name) {
-        if (name == null) return null;
-        if (name.toLowerCase().endsWith(".dat")) {
-            return name.substring(0, name.length() - 4);
-        }
-        return null;
-    }
-}
+package com.hydroline.beacon.task;
+
+import com.hydroline.beacon.BeaconPlugin;
+import com.hydroline.beacon.storage.DatabaseManager;
+import com.hydroline.beacon.storage.DatabaseWriteQueue;
+import com.hydroline.beacon.storage.FileSyncIndex;
+import com.hydroline.beacon.util.PathUtils;
+import com.hydroline.beacon.util.NbtUtils;
+import com.hydroline.beacon.world.WorldFileAccess;
+import org.bukkit.World;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class NbtIdentityScanner {
+
+    private static final String FILE_TYPE_PLAYERDATA = "playerdata";
+    private static final List<String> IDENTITY_PATHS = Arrays.asList(
+            "bukkit.lastKnownName", "bukkit.firstPlayed", "bukkit.lastPlayed");
+    // vanilla fallbacks: CraftBukkit files lack them, so they must not keep the read going to the end of the file
+    private static final List<String> FALLBACK_PATHS = Arrays.asList("firstPlayed", "lastPlayed");
+
+    private final BeaconPlugin plugin;
+
+    public NbtIdentityScanner(BeaconPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    public void scanOnce() {
+        scanOnce(true);
+    }
+
+    /**
+     * @param fullScan list every playerdata directory; otherwise only files reported by the watch service
+     */
+    public void scanOnce(boolean fullScan) {
+        WorldFileAccess wfa = plugin.getWorldFileAccess();
+        DatabaseManager db = plugin.getDatabaseManager();
+        ScanEngine engine = plugin.getScanEngine();
+        if (wfa == null || db == null || engine == null) return;
+
+        FileSyncIndex index = db.getFileSyncIndex();
+        ScanEngine.Result<PlayerFileResult> run;
+        try {
+            Set<File> dirty = wfa.drainDirtyFiles(WorldFileAccess.Category.PLAYERDATA);
+            Set<File> changes = fullScan ? null : dirty;
+            run = engine.run("NBT identity", sink -> {
+                List<File> candidates = new ArrayList<>();
+                if (changes != null) {
+                    candidates.addAll(changes);
+                } else {
+                    for (World world : wfa.getWorlds()) {
+                        File dir = wfa.getPlayerdataDirectory(world);
+                        if (!dir.isDirectory()) continue;
+                        File[] files = dir.listFiles((d, name) -> name.toLowerCase().endsWith(".dat"));
+                        if (files == null) continue;
+                        candidates.addAll(Arrays.asList(files));
+                    }
+                }
+                for (File f : candidates) {
+                    String uuid = stripDat(f.getName());
+                    if (uuid == null || uuid.length() < 32 || !f.isFile()) continue;
+                    long lastModified = f.lastModified();
+                    long size = f.length();
+                    String path = PathUtils.toServerRelativePath(plugin, f);
+                    if (index.isUnchanged(FILE_TYPE_PLAYERDATA, path, lastModified, size)) continue;
+                    sink.submit(() -> parsePlayerFile(f, uuid, path, lastModified, size));
+                }
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        int upserts = 0;
+        for (PlayerFileResult result : run.getResults()) {
+            index.put(FILE_TYPE_PLAYERDATA, result.path, result.lastModified, result.size, result.lastProcessed);
+            db.getPlayerNbtMemoryCache().invalidate(result.uuid);
+            if (result.identityWritten) {
+                upserts++;
+            }
+        }
+        if (upserts > 0) {
+            plugin.getLogger().info("NBT identity scan completed in " + run.getElapsedMillis() + " ms, files=" + run.getFilesQueued()
+                    + ", upserts=" + upserts + ", " + run.describeThroughput(run.getResults().size()));
+        }
+    }
+
+    /**
+     * Read the identity fields of one changed playerdata file on a scan worker. Returns the identity write together
+     * with the file's sync state, or null when the file could not be read (it is retried on the next scan).
+     */
+    private DatabaseWriteQueue.WriteCommand<PlayerFileResult> parsePlayerFile(File f,
+                                                                             String uuid,
+                                                                             String path,
+                                                                             long lastModified,
+                                                                             long size) {
+        Map<String, Object> fields;
+        try (FileInputStream in = new FileInputStream(f)) {
+            fields = NbtUtils.readPlayerDatPaths(in, IDENTITY_PATHS, FALLBACK_PATHS);
+        } catch (IOException e) {
+            plugin.getLogger().warning("Failed to parse NBT for " + path + ": " + e.getMessage());
+            return null;
+        }
+        // Common CraftBukkit path: bukkit -> lastKnownName, with vanilla fallbacks for the timestamps
+        Object lkn = fields.get("bukkit.lastKnownName");
+        String playerName = lkn instanceof String ? (String) lkn : null;
+        Long firstPlayed = asLong(fields.get("bukkit.firstPlayed"));
+        if (firstPlayed == null) {
+            firstPlayed = asLong(fields.get("firstPlayed"));
+        }
+        Long lastPlayed = asLong(fields.get("bukkit.lastPlayed"));
+        if (lastPlayed == null) {
+            lastPlayed = asLong(fields.get("lastPlayed"));
+        }
+
+        boolean hasIdentity = playerName != null && !playerName.isEmpty();
+        String name = playerName;
+        Long first = firstPlayed;
+        Long last = lastPlayed;
+        return conn -> {
+            long now = System.currentTimeMillis();
+            if (hasIdentity) {
+                upsertIdentity(conn, uuid, name, first, last, now);
+            }
+            // the cached full NBT may be stale now; get_player_nbt re-reads the file on its next request and keeps
+            // the stored payload when the content hash shows only the mtime moved
+            expirePlayerNbtCache(conn, uuid);
+            upsertFileSyncState(conn, uuid, path, lastModified, size, now);
+            return new PlayerFileResult(uuid, path, lastModified, size, now, hasIdentity);
+        };
+    }
+
+    private void upsertFileSyncState(Connection conn,
+                                     String uuid,
+                                     String path,
+                                     long lastModified,
+                                     long size,
+                                     long now) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO file_sync_state (file_type, player_uuid, file_path, last_modified, file_size, last_processed) " +
+                        "VALUES (?, ?, ?, ?, ?, ?) " +
+                        "ON CONFLICT(file_type, file_path) DO UPDATE SET " +
+                        "last_modified = excluded.last_modified, file_size = excluded.file_size, " +
+                        "last_processed = excluded.last_processed"
+        )) {
+            ps.setString(1, FILE_TYPE_PLAYERDATA);
+            ps.setString(2, uuid);
+            ps.setString(3, path);
+            ps.setLong(4, lastModified);
+            ps.setLong(5, size);
+            ps.setLong(6, now);
+            ps.executeUpdate();
+        }
+    }
+
+    private void upsertIdentity(Connection conn, String uuid, String name, Long firstPlayed, Long lastPlayed, long now) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO player_identities (player_uuid, player_name, first_played, last_played, last_updated) VALUES (?, ?, ?, ?, ?) " +
+                        "ON CONFLICT(player_uuid) DO UPDATE SET " +
+                        "player_name=excluded.player_name, " +
+                        "first_played=COALESCE(excluded.first_played, player_identities.first_played), " +
+                        "last_played=COALESCE(excluded.last_played, player_identities.last_played), " +
+                        "last_updated=excluded.last_updated"
+        )) {
+            ps.setString(1, uuid);
+            ps.setString(2, name);
+            if (firstPlayed != null) {
+                ps.setLong(3, firstPlayed);
+            } else {
+                ps.setNull(3, java.sql.Types.BIGINT);
+            }
+            if (lastPlayed != null) {
+                ps.setLong(4, lastPlayed);
+            } else {
+                ps.setNull(4, java.sql.Types.BIGINT);
+            }
+            ps.setLong(5, now);
+            ps.executeUpdate();
+        }
+    }
+
+    private void expirePlayerNbtCache(Connection conn, String uuid) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("UPDATE player_nbt_cache SET cached_at = 0 WHERE player_uuid = ?")) {
+            ps.setString(1, uuid);
+            ps.executeUpdate();
+        }
+    }
+
+    private Long asLong(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof String) {
+            try {
+                return Long.parseLong((String) value);
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return null;
+    }
+
+    private static final class PlayerFileResult {
+        private final String uuid;
+        private final String path;
+        private final long lastModified;
+        private final long size;
+        private final long lastProcessed;
+        private final boolean identityWritten;
+
+        private PlayerFileResult(String uuid,
+                                 String path,
+                                 long lastModified,
+                                 long size,
+                                 long lastProcessed,
+                                 boolean identityWritten) {
+            this.uuid = uuid;
+            this.path = path;
+            this.lastModified = lastModified;
+            this.size = size;
+            this.lastProcessed = lastProcessed;
+            this.identityWritten = identityWritten;
+        }
+    }
+
+    private String stripDat(String name) {
+        if (name == null) return null;
+        if (name.toLowerCase().endsWith(".dat")) {
+            return name.substring(0, name.length() - 4);
+        }
+        return null;
+    }
+}
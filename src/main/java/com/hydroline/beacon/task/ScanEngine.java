@@ -0,0 +1,208 @@
+package com.hydroline.beacon.task;
+
+import com.hydroline.beacon.storage.DatabaseManager;
+import com.hydroline.beacon.storage.DatabaseWriteQueue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Parallel pipeline shared by the file scanners. The scanning thread discovers files and hands each one to a
+ * fixed worker pool for parsing. Pending parses sit in a bounded queue in discovery order, so discovery blocks
+ * when parsing falls behind. One committer per run takes the parsed results in that same order and submits
+ * their writes to the database write queue, which groups them into batched transactions.
+ */
+public class ScanEngine {
+
+    /**
+     * Parses one file on a worker thread.
+     */
+    public interface ScanJob<R> {
+        /**
+         * @return the write for the committer, or null when the file needs no write
+         */
+        DatabaseWriteQueue.WriteCommand<R> parse() throws Exception;
+    }
+
+    public interface Discovery<R> {
+        void discover(Sink<R> sink) throws Exception;
+    }
+
+    public interface Sink<R> {
+        void submit(ScanJob<R> job) throws InterruptedException;
+    }
+
+    public static final class Result<R> {
+        private final List<R> results;
+        private final int filesQueued;
+        private final int failures;
+        private final long elapsedMillis;
+
+        private Result(List<R> results, int filesQueued, int failures, long elapsedMillis) {
+            this.results = results;
+            this.filesQueued = filesQueued;
+            this.failures = failures;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        /**
+         * Results of the committed writes, in discovery order.
+         */
+        public List<R> getResults() {
+            return results;
+        }
+
+        public int getFilesQueued() {
+            return filesQueued;
+        }
+
+        public int getFailures() {
+            return failures;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        public String describeThroughput(long rows) {
+            double seconds = Math.max(elapsedMillis, 1L) / 1000.0;
+            return String.format(Locale.ROOT, "%.1f files/s, %.1f rows/s", filesQueued / seconds, rows / seconds);
+        }
+    }
+
+    private static final long ENQUEUE_POLL_MILLIS = 200L;
+    private static final int QUEUE_SLOTS_PER_WORKER = 8;
+
+    private final DatabaseManager databaseManager;
+    private final Logger logger;
+    private final int queueCapacity;
+    private final ExecutorService workers;
+    private final ExecutorService committers;
+    private volatile boolean closed;
+
+    public ScanEngine(DatabaseManager databaseManager, Logger logger, int workerThreads) {
+        int threads = Math.max(1, workerThreads);
+        this.databaseManager = databaseManager;
+        this.logger = logger;
+        this.queueCapacity = threads * QUEUE_SLOTS_PER_WORKER;
+        this.workers = Executors.newFixedThreadPool(threads, namedDaemon("Beacon-Scan-Worker"));
+        this.committers = Executors.newCachedThreadPool(namedDaemon("Beacon-Scan-Committer"));
+    }
+
+    /**
+     * Run one scan pass: {@code discovery} executes on the calling thread and this method returns once every
+     * queued write has been committed or has failed.
+     */
+    public <R> Result<R> run(String name, Discovery<R> discovery) throws InterruptedException {
+        long startedAt = System.currentTimeMillis();
+        BlockingQueue<Future<DatabaseWriteQueue.WriteCommand<R>>> parsed = new ArrayBlockingQueue<>(queueCapacity);
+        CompletableFuture<DatabaseWriteQueue.WriteCommand<R>> endOfRun = new CompletableFuture<>();
+        List<CompletableFuture<R>> writes = new ArrayList<>();
+        AtomicInteger failures = new AtomicInteger();
+
+        Future<?> committing;
+        try {
+            committing = committers.submit(() -> {
+                while (true) {
+                    Future<DatabaseWriteQueue.WriteCommand<R>> next = parsed.take();
+                    if (next == endOfRun) {
+                        return null;
+                    }
+                    try {
+                        DatabaseWriteQueue.WriteCommand<R> command = next.get();
+                        if (command != null) {
+                            writes.add(databaseManager.submitWrite(command));
+                        }
+                    } catch (ExecutionException e) {
+                        failures.incrementAndGet();
+                        Throwable cause = e.getCause() != null ? e.getCause() : e;
+                        logger.warning("Failed to parse file during " + name + " scan: " + cause.getMessage());
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            return new Result<>(new ArrayList<>(), 0, 0, 0L);
+        }
+
+        AtomicInteger queued = new AtomicInteger();
+        try {
+            discovery.discover(job -> {
+                Future<DatabaseWriteQueue.WriteCommand<R>> future;
+                try {
+                    future = workers.submit(job::parse);
+                } catch (RejectedExecutionException e) {
+                    throw new InterruptedException("Scan engine is shut down");
+                }
+                enqueue(parsed, future);
+                queued.incrementAndGet();
+            });
+        } catch (InterruptedException e) {
+            committing.cancel(true);
+            throw e;
+        } catch (Exception e) {
+            logger.severe("Failed to discover files for " + name + " scan: " + e.getMessage());
+        }
+
+        try {
+            enqueue(parsed, endOfRun);
+            committing.get();
+        } catch (InterruptedException e) {
+            committing.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            logger.severe("Committer for " + name + " scan stopped: " + cause.getMessage());
+        }
+
+        List<R> results = new ArrayList<>(writes.size());
+        for (CompletableFuture<R> write : writes) {
+            try {
+                results.add(write.get());
+            } catch (ExecutionException e) {
+                failures.incrementAndGet();
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                logger.severe("Failed to write " + name + " scan results: " + cause.getMessage());
+            }
+        }
+        return new Result<>(results, queued.get(), failures.get(), System.currentTimeMillis() - startedAt);
+    }
+
+    /**
+     * Stop the worker and committer threads; running scans end at their next queue operation.
+     */
+    public void shutdown() {
+        closed = true;
+        workers.shutdownNow();
+        committers.shutdownNow();
+    }
+
+    private <T> void enqueue(BlockingQueue<T> queue, T item) throws InterruptedException {
+        while (!queue.offer(item, ENQUEUE_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (closed) {
+                throw new InterruptedException("Scan engine is shut down");
+            }
+        }
+    }
+
+    private static ThreadFactory namedDaemon(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
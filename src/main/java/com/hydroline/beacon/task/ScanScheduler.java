@@ -2,15 +2,25 @@ package com.hydroline.beacon.task;
 
 import com.hydroline.beacon.BeaconPlugin;
 import com.hydroline.beacon.config.PluginConfig;
+import com.hydroline.beacon.world.WorldFileAccess;
 import org.bukkit.Bukkit;
 import org.bukkit.scheduler.BukkitTask;
 
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
 public class ScanScheduler {
 
     private final BeaconPlugin plugin;
     private BukkitTask advancementsAndStatsTask;
     private BukkitTask mtrLogsTask;
     private BukkitTask nbtIdentityTask;
+    private MtrTimestampBackfill mtrTimestampBackfill;
+    // one scan of each kind at a time: a run can outlast the interval, and Bukkit would start the next regardless
+    private final AtomicBoolean advancementsAndStatsRunning = new AtomicBoolean();
+    private final AtomicBoolean mtrLogsRunning = new AtomicBoolean();
+    private final AtomicBoolean nbtIdentityRunning = new AtomicBoolean();
 
     public ScanScheduler(BeaconPlugin plugin) {
         this.plugin = plugin;
@@ -23,21 +33,128 @@ public class ScanScheduler {
             interval = 200L;
         }
 
+        if (cfg.isFileWatch() && startWatching()) {
+            startWatchMode(cfg);
+        } else {
+            advancementsAndStatsTask = Bukkit.getScheduler()
+                    .runTaskTimerAsynchronously(plugin, () -> runExclusive(advancementsAndStatsRunning, () ->
+                            new AdvancementsAndStatsScanner(plugin).scanOnce()
+                    ), interval, interval);
+
+            mtrLogsTask = Bukkit.getScheduler()
+                    .runTaskTimerAsynchronously(plugin, () -> runExclusive(mtrLogsRunning, () ->
+                            new MtrLogsScanner(plugin).scanOnce()
+                    ), interval / 2, interval);
+
+            // periodically refresh UUID<->name mapping from playerdata
+            nbtIdentityTask = Bukkit.getScheduler()
+                    .runTaskTimerAsynchronously(plugin, () -> runExclusive(nbtIdentityRunning, () ->
+                            new NbtIdentityScanner(plugin).scanOnce()
+                    ), interval, interval * 6); // less frequent after first run (~6x interval)
+        }
+
+        // one-off fill of mtr_logs.timestamp_ms for rows written before the column existed
+        mtrTimestampBackfill = new MtrTimestampBackfill(plugin);
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, mtrTimestampBackfill);
+    }
+
+    /**
+     * Watch mode: every scanner runs on the short watch interval but only looks at files the watch service
+     * reported, with a full listing every file_watch_reconcile_minutes as a safety net.
+     */
+    private void startWatchMode(PluginConfig cfg) {
+        long interval = cfg.getFileWatchIntervalTicks();
+        long reconcileMillis = cfg.getFileWatchReconcileMinutes() * 60_000L;
+        AtomicLong advancementsAndStatsFullAt = new AtomicLong();
+        AtomicLong mtrLogsFullAt = new AtomicLong();
+        AtomicLong nbtIdentityFullAt = new AtomicLong();
+
         advancementsAndStatsTask = Bukkit.getScheduler()
-                .runTaskTimerAsynchronously(plugin, () -> {
-                    new AdvancementsAndStatsScanner(plugin).scanOnce();
-                }, interval, interval);
+                .runTaskTimerAsynchronously(plugin, () -> runExclusive(advancementsAndStatsRunning, () ->
+                        new AdvancementsAndStatsScanner(plugin).scanOnce(isFullScanDue(advancementsAndStatsFullAt, reconcileMillis))
+                ), interval, interval);
 
         mtrLogsTask = Bukkit.getScheduler()
-                .runTaskTimerAsynchronously(plugin, () -> {
-                    new MtrLogsScanner(plugin).scanOnce();
-                }, interval / 2, interval);
+                .runTaskTimerAsynchronously(plugin, () -> runExclusive(mtrLogsRunning, () ->
+                        new MtrLogsScanner(plugin).scanOnce(isFullScanDue(mtrLogsFullAt, reconcileMillis))
+                ), interval / 2, interval);
 
-        // periodically refresh UUID<->name mapping from playerdata
         nbtIdentityTask = Bukkit.getScheduler()
-                .runTaskTimerAsynchronously(plugin, () -> {
-                    new NbtIdentityScanner(plugin).scanOnce();
-                }, interval, interval * 6); // less frequent after first run (~6x interval)
+                .runTaskTimerAsynchronously(plugin, () -> runExclusive(nbtIdentityRunning, () ->
+                        new NbtIdentityScanner(plugin).scanOnce(isFullScanDue(nbtIdentityFullAt, reconcileMillis))
+                ), interval, interval);
+    }
+
+    /**
+     * Run a full advancements/stats scan followed by a full MTR logs scan on an async thread, sharing the
+     * per-scanner guards with the periodic tasks.
+     *
+     * @return false when a scan of either kind is already running; nothing is queued then
+     */
+    public boolean forceFullScan() {
+        if (!advancementsAndStatsRunning.compareAndSet(false, true)) {
+            return false;
+        }
+        if (!mtrLogsRunning.compareAndSet(false, true)) {
+            advancementsAndStatsRunning.set(false);
+            return false;
+        }
+        try {
+            Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+                try {
+                    new AdvancementsAndStatsScanner(plugin).scanOnce();
+                } finally {
+                    advancementsAndStatsRunning.set(false);
+                }
+                try {
+                    new MtrLogsScanner(plugin).scanOnce();
+                } finally {
+                    mtrLogsRunning.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            advancementsAndStatsRunning.set(false);
+            mtrLogsRunning.set(false);
+            throw e;
+        }
+        return true;
+    }
+
+    private boolean startWatching() {
+        WorldFileAccess worldFileAccess = plugin.getWorldFileAccess();
+        if (worldFileAccess == null) {
+            return false;
+        }
+        try {
+            worldFileAccess.startWatching(plugin.getLogger());
+            plugin.getLogger().info("File watch mode enabled; falling back to full scans every "
+                    + plugin.getConfigManager().getCurrentConfig().getFileWatchReconcileMinutes() + " minute(s).");
+            return true;
+        } catch (IOException | UnsupportedOperationException e) {
+            plugin.getLogger().warning("File watch mode unavailable, using periodic scans: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static void runExclusive(AtomicBoolean running, Runnable scan) {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            scan.run();
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private static boolean isFullScanDue(AtomicLong lastFullScanAt, long reconcileMillis) {
+        long now = System.currentTimeMillis();
+        long last = lastFullScanAt.get();
+        if (last != 0L && now - last < reconcileMillis) {
+            return false;
+        }
+        lastFullScanAt.set(now);
+        return true;
     }
 
     public void stop() {
@@ -53,6 +170,13 @@ public class ScanScheduler {
             nbtIdentityTask.cancel();
             nbtIdentityTask = null;
         }
+        if (mtrTimestampBackfill != null) {
+            mtrTimestampBackfill.cancel();
+            mtrTimestampBackfill = null;
+        }
+        WorldFileAccess worldFileAccess = plugin.getWorldFileAccess();
+        if (worldFileAccess != null) {
+            worldFileAccess.stopWatching();
+        }
     }
 }
-
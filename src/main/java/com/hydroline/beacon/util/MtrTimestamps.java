@@ -0,0 +1,81 @@
+package com.hydroline.beacon.util;
+
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoField;
+
+/**
+ * Parses the {@code Timestamp} column of MTR CSV logs into epoch millis.
+ * MTR writes {@code 2025-02-13 19:38:31 +0800}; ISO-8601 variants, offset-less local times
+ * (interpreted in the server zone) and raw epoch millis are accepted as well.
+ */
+public final class MtrTimestamps {
+
+    private static final DateTimeFormatter DATE_TIME = new DateTimeFormatterBuilder()
+            .appendPattern("yyyy-MM-dd")
+            .optionalStart().appendLiteral('T').optionalEnd()
+            .optionalStart().appendLiteral(' ').optionalEnd()
+            .appendPattern("HH:mm:ss")
+            .optionalStart().appendFraction(ChronoField.NANO_OF_SECOND, 0, 9, true).optionalEnd()
+            .toFormatter();
+
+    private static final DateTimeFormatter WITH_OFFSET = new DateTimeFormatterBuilder()
+            .append(DATE_TIME)
+            .optionalStart().appendLiteral(' ').optionalEnd()
+            .appendOffset("+HHMM", "Z")
+            .toFormatter();
+
+    private static final DateTimeFormatter WITH_COLON_OFFSET = new DateTimeFormatterBuilder()
+            .append(DATE_TIME)
+            .optionalStart().appendLiteral(' ').optionalEnd()
+            .appendOffset("+HH:MM", "Z")
+            .toFormatter();
+
+    private MtrTimestamps() {}
+
+    /**
+     * @return epoch millis, or null when the value is empty or in an unknown format
+     */
+    public static Long parseEpochMillis(String value) {
+        if (value == null) {
+            return null;
+        }
+        String text = value.trim();
+        if (text.isEmpty()) {
+            return null;
+        }
+        if (isDigits(text)) {
+            try {
+                return Long.parseLong(text);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        try {
+            return OffsetDateTime.parse(text, WITH_OFFSET).toInstant().toEpochMilli();
+        } catch (DateTimeParseException ignored) {
+        }
+        try {
+            return OffsetDateTime.parse(text, WITH_COLON_OFFSET).toInstant().toEpochMilli();
+        } catch (DateTimeParseException ignored) {
+        }
+        try {
+            return LocalDateTime.parse(text, DATE_TIME).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeParseException ignored) {
+        }
+        return null;
+    }
+
+    private static boolean isDigits(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (!Character.isDigit(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,159 @@
+package com.hydroline.beacon.util;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A set of NBT paths to keep when streaming playerdata to JSON. Paths are dot-separated compound keys; a key may
+ * be followed by {@code [*]} (every element) or {@code [n]} (element n) selectors for list tags, e.g.
+ * {@code Inventory[*].id}, {@code Pos[1]} or {@code bukkit.lastKnownName}. A path selects the whole subtree it
+ * ends on. Lists keep only their selected elements, in file order.
+ */
+public final class NbtProjection {
+
+    public static final int MAX_PATHS = 64;
+
+    /**
+     * One position in the path trie: compound children by key and list elements by selector.
+     */
+    static final class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        private final Map<Integer, Node> elements = new HashMap<>();
+        private Node anyElement;
+        private boolean whole;
+
+        Node child(String name) {
+            return children.get(name);
+        }
+
+        /**
+         * @return the selector for list element {@code index}; index selectors already include {@code [*]}
+         */
+        Node element(int index) {
+            Node node = elements.get(index);
+            return node != null ? node : anyElement;
+        }
+
+        boolean isWhole() {
+            return whole;
+        }
+
+        /**
+         * @return whether a tag of this type at this position contributes anything to the projection
+         */
+        boolean accepts(int tagType) {
+            if (whole) {
+                return true;
+            }
+            if (tagType == 10) {
+                return !children.isEmpty();
+            }
+            if (tagType == 9) {
+                return anyElement != null || !elements.isEmpty();
+            }
+            return false;
+        }
+    }
+
+    private final Node root = new Node();
+
+    private NbtProjection() {
+    }
+
+    /**
+     * @throws IllegalArgumentException when a path is malformed or there are more than {@link #MAX_PATHS}
+     */
+    public static NbtProjection parse(Collection<String> paths) {
+        if (paths.size() > MAX_PATHS) {
+            throw new IllegalArgumentException("paths must contain at most " + MAX_PATHS + " entries");
+        }
+        NbtProjection projection = new NbtProjection();
+        for (String path : paths) {
+            projection.add(path);
+        }
+        foldAnyElement(projection.root);
+        return projection;
+    }
+
+    Node root() {
+        return root;
+    }
+
+    private void add(String path) {
+        if (path == null || path.isEmpty()) {
+            throw new IllegalArgumentException("NBT path must not be empty");
+        }
+        Node node = root;
+        for (String segment : path.split("\\.", -1)) {
+            int bracket = segment.indexOf('[');
+            String key = bracket < 0 ? segment : segment.substring(0, bracket);
+            if (key.isEmpty()) {
+                throw new IllegalArgumentException("invalid NBT path: " + path);
+            }
+            node = node.children.computeIfAbsent(key, k -> new Node());
+            int pos = bracket;
+            while (pos >= 0 && pos < segment.length()) {
+                int close = segment.indexOf(']', pos);
+                if (segment.charAt(pos) != '[' || close < 0) {
+                    throw new IllegalArgumentException("invalid NBT path: " + path);
+                }
+                node = selectElement(node, segment.substring(pos + 1, close), path);
+                pos = close + 1;
+            }
+        }
+        node.whole = true;
+    }
+
+    // Merge each [*] selector into its sibling [n] selectors, so that Inventory[*].id and Inventory[0].Count
+    // both apply to element 0.
+    private static void foldAnyElement(Node node) {
+        for (Node child : node.children.values()) {
+            foldAnyElement(child);
+        }
+        if (node.anyElement != null) {
+            foldAnyElement(node.anyElement);
+        }
+        for (Node element : node.elements.values()) {
+            if (node.anyElement != null) {
+                merge(element, node.anyElement);
+            }
+            foldAnyElement(element);
+        }
+    }
+
+    private static void merge(Node target, Node source) {
+        target.whole |= source.whole;
+        for (Map.Entry<String, Node> entry : source.children.entrySet()) {
+            merge(target.children.computeIfAbsent(entry.getKey(), k -> new Node()), entry.getValue());
+        }
+        for (Map.Entry<Integer, Node> entry : source.elements.entrySet()) {
+            merge(target.elements.computeIfAbsent(entry.getKey(), i -> new Node()), entry.getValue());
+        }
+        if (source.anyElement != null) {
+            if (target.anyElement == null) {
+                target.anyElement = new Node();
+            }
+            merge(target.anyElement, source.anyElement);
+        }
+    }
+
+    private static Node selectElement(Node node, String selector, String path) {
+        if ("*".equals(selector)) {
+            if (node.anyElement == null) {
+                node.anyElement = new Node();
+            }
+            return node.anyElement;
+        }
+        int index;
+        try {
+            index = Integer.parseInt(selector);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid NBT list selector [" + selector + "] in " + path);
+        }
+        if (index < 0) {
+            throw new IllegalArgumentException("invalid NBT list selector [" + selector + "] in " + path);
+        }
+        return node.elements.computeIfAbsent(index, i -> new Node());
+    }
+}
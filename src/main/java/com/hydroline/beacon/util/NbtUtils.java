@@ -1,119 +1,686 @@
-package com.hydroline.beacon.util;
-
-import com.fasterxml.jackson.databind.ObjectMapper;
-
-import java.io.DataInputStream;
-import java.io.EOFException;
-import java.io.IOException;
-import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.zip.GZIPInputStream;
-
-/**
- * Minimal NBT reader that supports common tag types and converts to simple Java Maps/Lists for JSON serialization.
- * This avoids depending on NMS or external libraries.
- */
-public class NbtUtils {
-
-    private static final ObjectMapper MAPPER = new ObjectMapper();
-
-    public static Map<String, Object> readPlayerDatToMap(InputStream gzippedInput) throws IOException {
-        try (GZIPInputStream gis = new GZIPInputStream(gzippedInput);
-             DataInputStream in = new DataInputStream(gis)) {
-            int type = in.readUnsignedByte();
-            if (type != 10) { // TAG_Compound
-                throw new IOException("Invalid root tag type: " + type);
-            }
-            // root name (often empty), read and discard
-            readString(in);
-            return readCompoundPayload(in);
-        }
-    }
-
-    public static String toJson(Map<String, Object> map) throws IOException {
-        return MAPPER.writeValueAsString(map);
-    }
-
-    private static String readString(DataInputStream in) throws IOException {
-        int len = in.readUnsignedShort();
-        byte[] bytes = new byte[len];
-        in.readFully(bytes);
-        return new String(bytes, StandardCharsets.UTF_8);
-    }
-
-    private static Map<String, Object> readCompoundPayload(DataInputStream in) throws IOException {
-        Map<String, Object> map = new HashMap<>();
-        while (true) {
-            int type;
-            try {
-                type = in.readUnsignedByte();
-            } catch (EOFException eof) {
-                // Unexpected EOF
-                throw eof;
-            }
-            if (type == 0) { // TAG_End
-                break;
-            }
-            String name = readString(in);
-            Object value = readPayloadByType(in, type);
-            map.put(name, value);
-        }
-        return map;
-    }
-
-    private static Object readPayloadByType(DataInputStream in, int type) throws IOException {
-        switch (type) {
-            case 1: // byte
-                return in.readByte();
-            case 2: // short
-                return in.readShort();
-            case 3: // int
-                return in.readInt();
-            case 4: // long
-                return in.readLong();
-            case 5: // float
-                return in.readFloat();
-            case 6: // double
-                return in.readDouble();
-            case 7: { // byte array
-                int length = in.readInt();
-                List<Integer> arr = new ArrayList<>(Math.max(0, Math.min(length, 1 << 20)));
-                for (int i = 0; i < length; i++) {
-                    arr.add((int) in.readByte());
-                }
-                return arr;
-            }
-            case 8: // string
-                return readString(in);
-            case 9: { // list
-                int elemType = in.readUnsignedByte();
-                int length = in.readInt();
-                List<Object> list = new ArrayList<>(Math.max(0, Math.min(length, 1 << 20)));
-                for (int i = 0; i < length; i++) {
-                    list.add(readPayloadByType(in, elemType));
-                }
-                return list;
-            }
-            case 10: // compound
-                return readCompoundPayload(in);
-            case 11: { // int array
-                int length = in.readInt();
-                List<Integer> arr = new ArrayList<>(Math.max(0, Math.min(length, 1 << 20)));
-                for (int i = 0; i < length; i++) arr.add(in.readInt());
-                return arr;
-            }
-            case 12: { // long array
-                int length = in.readInt();
-                List<Long> arr = new ArrayList<>(Math.max(0, Math.min(length, 1 << 20)));
-                for (int i = 0; i < length; i++) arr.add(in.readLong());
-                return arr;
-            }
-            default:
-                throw new IOException("Unsupported NBT tag type: " + type);
-        }
-    }
-}
+package com.hydroline.beacon.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Minimal NBT reader that supports common tag types and converts to simple Java Maps/Lists for JSON serialization.
+ * Byte, int and long array tags are kept as {@code byte[]}/{@code int[]}/{@code long[]}.
+ * This avoids depending on NMS or external libraries.
+ */
+public class NbtUtils {
+
+    /**
+     * How byte, int and long array tags are written to JSON. {@code LIST} writes a number array; {@code BASE64}
+     * and {@code HEX} write one string holding the array's big-endian bytes as stored in the file.
+     */
+    public enum ArrayEncoding {
+        LIST,
+        BASE64,
+        HEX;
+
+        /**
+         * @param value {@code list}, {@code base64} or {@code hex} (case-insensitive); null or empty means list
+         */
+        public static ArrayEncoding fromString(String value) {
+            if (value == null || value.isEmpty()) {
+                return LIST;
+            }
+            for (ArrayEncoding encoding : values()) {
+                if (encoding.name().equalsIgnoreCase(value)) {
+                    return encoding;
+                }
+            }
+            throw new IllegalArgumentException("arrayEncoding must be list, base64 or hex");
+        }
+    }
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    // Arrays are allocated in steps as their elements arrive rather than from the declared length, so a corrupt
+    // length costs memory only up to the real content before EOFException. A multiple of 3 keeps base64 chunks
+    // free of padding.
+    private static final int ARRAY_CHUNK = 3 << 14;
+
+    // byte[] would otherwise be written as base64; keep the number-array shape of the other array tags
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .registerModule(new SimpleModule().addSerializer(byte[].class, new StdSerializer<byte[]>(byte[].class) {
+                @Override
+                public void serialize(byte[] value, JsonGenerator generator, SerializerProvider provider) throws IOException {
+                    generator.writeStartArray();
+                    for (byte b : value) {
+                        generator.writeNumber((int) b);
+                    }
+                    generator.writeEndArray();
+                }
+            }));
+
+    public static Map<String, Object> readPlayerDatToMap(InputStream gzippedInput) throws IOException {
+        try (GZIPInputStream gis = new GZIPInputStream(gzippedInput);
+             DataInputStream in = new DataInputStream(gis)) {
+            int type = in.readUnsignedByte();
+            if (type != 10) { // TAG_Compound
+                throw new IOException("Invalid root tag type: " + type);
+            }
+            // root name (often empty), read and discard
+            readString(in);
+            return readCompoundPayload(in);
+        }
+    }
+
+    /**
+     * Read only the given dot-separated paths (e.g. {@code bukkit.lastKnownName}) from a gzipped playerdata file.
+     * Everything else is skipped without being materialized: fixed-width lists and arrays are skipped by their
+     * declared lengths, other subtrees tag by tag. Reading stops as soon as every path has been found.
+     *
+     * @return path -> value for the paths present in the file, values converted as in {@link #readPlayerDatToMap}
+     */
+    public static Map<String, Object> readPlayerDatPaths(InputStream gzippedInput, Collection<String> paths) throws IOException {
+        return readPlayerDatPaths(gzippedInput, paths, Collections.<String>emptyList());
+    }
+
+    /**
+     * Like {@link #readPlayerDatPaths(InputStream, Collection)}, additionally returning {@code optionalPaths} that
+     * appear before the last of {@code paths} has been found. Only {@code paths} decide when reading stops, so
+     * fallbacks that most files lack do not force a walk to the end of the file. With no {@code paths} the whole
+     * file is read.
+     */
+    public static Map<String, Object> readPlayerDatPaths(InputStream gzippedInput,
+                                                         Collection<String> paths,
+                                                         Collection<String> optionalPaths) throws IOException {
+        PathNode root = new PathNode();
+        int wanted = root.addPaths(paths);
+        root.addOptionalPaths(optionalPaths);
+        if (wanted == 0) {
+            wanted = Integer.MAX_VALUE;
+        }
+        Map<String, Object> result = new HashMap<>();
+        try (GZIPInputStream gis = new GZIPInputStream(gzippedInput);
+             DataInputStream in = new DataInputStream(gis)) {
+            int type = in.readUnsignedByte();
+            if (type != 10) { // TAG_Compound
+                throw new IOException("Invalid root tag type: " + type);
+            }
+            skipBytes(in, in.readUnsignedShort());
+            new SelectiveReader(in, result, wanted).readCompound(root);
+        }
+        return result;
+    }
+
+    /**
+     * Convert a gzipped playerdata file straight to JSON text, producing the same values as
+     * {@code toJson(readPlayerDatToMap(in))} without building the intermediate maps. Object keys keep the order
+     * in which they appear in the file.
+     */
+    public static String readPlayerDatToJson(InputStream gzippedInput) throws IOException {
+        return readPlayerDatToJson(gzippedInput, ArrayEncoding.LIST, null, Collections.<String>emptyList(), null);
+    }
+
+    /**
+     * Like {@link #readPlayerDatToJson(InputStream)} with the given array encoding, keeping only the subtrees
+     * selected by {@code projection} (null keeps everything). Additionally copies the scalar values found at
+     * {@code capturePaths} (dot-separated, as in {@link #readPlayerDatPaths}) into {@code captured}; values outside
+     * the projection are not seen.
+     */
+    public static String readPlayerDatToJson(InputStream gzippedInput,
+                                             ArrayEncoding arrayEncoding,
+                                             NbtProjection projection,
+                                             Collection<String> capturePaths,
+                                             Map<String, Object> captured) throws IOException {
+        StringWriter out = new StringWriter();
+        try (JsonGenerator generator = MAPPER.getFactory().createGenerator(out)) {
+            writePlayerDatJson(gzippedInput, generator, arrayEncoding, projection, capturePaths, captured);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Stream a gzipped playerdata file into {@code generator} as one JSON object; see
+     * {@link #readPlayerDatToJson(InputStream, ArrayEncoding, NbtProjection, Collection, Map)}.
+     */
+    public static void writePlayerDatJson(InputStream gzippedInput,
+                                          JsonGenerator generator,
+                                          ArrayEncoding arrayEncoding,
+                                          NbtProjection projection,
+                                          Collection<String> capturePaths,
+                                          Map<String, Object> captured) throws IOException {
+        PathNode root = null;
+        if (captured != null && !capturePaths.isEmpty()) {
+            root = new PathNode();
+            root.addPaths(capturePaths);
+        }
+        try (GZIPInputStream gis = new GZIPInputStream(gzippedInput);
+             DataInputStream in = new DataInputStream(gis)) {
+            int type = in.readUnsignedByte();
+            if (type != 10) { // TAG_Compound
+                throw new IOException("Invalid root tag type: " + type);
+            }
+            skipBytes(in, in.readUnsignedShort());
+            new JsonStreamer(in, generator, arrayEncoding, captured)
+                    .writeCompound(root, projection != null ? projection.root() : null);
+        }
+    }
+
+    public static String toJson(Map<String, Object> map) throws IOException {
+        return MAPPER.writeValueAsString(map);
+    }
+
+    /**
+     * Requested paths as a tree; child names are kept UTF-8 encoded so tag names can be matched in place.
+     */
+    private static final class PathNode {
+        private final List<byte[]> names = new ArrayList<>();
+        private final List<PathNode> children = new ArrayList<>();
+        private String path;
+        // found when convenient, but not counted towards stopping the read
+        private boolean optional;
+
+        private PathNode child(String name) {
+            byte[] encoded = name.getBytes(StandardCharsets.UTF_8);
+            for (int i = 0; i < names.size(); i++) {
+                if (Arrays.equals(names.get(i), encoded)) {
+                    return children.get(i);
+                }
+            }
+            PathNode node = new PathNode();
+            names.add(encoded);
+            children.add(node);
+            return node;
+        }
+
+        /**
+         * @return how many distinct paths were added
+         */
+        private int addPaths(Collection<String> paths) {
+            int added = 0;
+            for (String fullPath : paths) {
+                PathNode node = this;
+                for (String segment : fullPath.split("\\.")) {
+                    node = node.child(segment);
+                }
+                if (node.path == null) {
+                    node.path = fullPath;
+                    added++;
+                }
+            }
+            return added;
+        }
+
+        private void addOptionalPaths(Collection<String> paths) {
+            for (String fullPath : paths) {
+                PathNode node = this;
+                for (String segment : fullPath.split("\\.")) {
+                    node = node.child(segment);
+                }
+                if (node.path == null) {
+                    node.path = fullPath;
+                    node.optional = true;
+                }
+            }
+        }
+
+        private PathNode match(byte[] buffer, int length) {
+            for (int i = 0; i < names.size(); i++) {
+                byte[] name = names.get(i);
+                if (name.length == length && rangeEquals(name, buffer, length)) {
+                    return children.get(i);
+                }
+            }
+            return null;
+        }
+
+        private static boolean rangeEquals(byte[] a, byte[] b, int length) {
+            for (int i = 0; i < length; i++) {
+                if (a[i] != b[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class SelectiveReader {
+        private final DataInputStream in;
+        private final Map<String, Object> result;
+        private int remaining;
+        private byte[] nameBuffer = new byte[64];
+
+        private SelectiveReader(DataInputStream in, Map<String, Object> result, int remaining) {
+            this.in = in;
+            this.result = result;
+            this.remaining = remaining;
+        }
+
+        /**
+         * @return false once every requested path has been read, so callers can stop without finishing the tag
+         */
+        private boolean readCompound(PathNode node) throws IOException {
+            while (remaining > 0) {
+                int type = in.readUnsignedByte();
+                if (type == 0) { // TAG_End
+                    return true;
+                }
+                int length = in.readUnsignedShort();
+                if (length > nameBuffer.length) {
+                    nameBuffer = new byte[Math.max(length, nameBuffer.length * 2)];
+                }
+                in.readFully(nameBuffer, 0, length);
+                PathNode child = node.match(nameBuffer, length);
+                if (child == null) {
+                    skipPayload(in, type);
+                } else if (child.path != null) {
+                    result.put(child.path, readPayloadByType(in, type));
+                    if (!child.optional) {
+                        remaining--;
+                    }
+                } else if (type == 10) {
+                    if (!readCompound(child)) {
+                        return false;
+                    }
+                } else {
+                    skipPayload(in, type);
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Writes NBT payloads as JSON tokens with the same shapes {@link #toJson} gives the tree from
+     * {@link #readPayloadByType}: numeric tags keep their Java width, array tags follow the {@link ArrayEncoding}.
+     */
+    private static final class JsonStreamer {
+        private final DataInputStream in;
+        private final JsonGenerator generator;
+        private final ArrayEncoding arrayEncoding;
+        private final Map<String, Object> captured;
+        private byte[] nameBuffer = new byte[64];
+
+        private JsonStreamer(DataInputStream in,
+                             JsonGenerator generator,
+                             ArrayEncoding arrayEncoding,
+                             Map<String, Object> captured) {
+            this.in = in;
+            this.generator = generator;
+            this.arrayEncoding = arrayEncoding;
+            this.captured = captured;
+        }
+
+        /**
+         * @param node       capture paths below this compound, or null when nothing below it is captured
+         * @param projection the selected children of this compound, or null when the whole compound is written
+         */
+        private void writeCompound(PathNode node, NbtProjection.Node projection) throws IOException {
+            generator.writeStartObject();
+            while (true) {
+                int type = in.readUnsignedByte();
+                if (type == 0) { // TAG_End
+                    break;
+                }
+                int length = in.readUnsignedShort();
+                if (length > nameBuffer.length) {
+                    nameBuffer = new byte[Math.max(length, nameBuffer.length * 2)];
+                }
+                in.readFully(nameBuffer, 0, length);
+                String name = new String(nameBuffer, 0, length, StandardCharsets.UTF_8);
+                NbtProjection.Node selected = null;
+                if (projection != null) {
+                    selected = projection.child(name);
+                    if (selected == null || !selected.accepts(type)) {
+                        skipPayload(in, type);
+                        continue;
+                    }
+                }
+                PathNode child = node != null ? node.match(nameBuffer, length) : null;
+                generator.writeFieldName(name);
+                writePayload(type, child, selected);
+            }
+            generator.writeEndObject();
+        }
+
+        private void writePayload(int type, PathNode node, NbtProjection.Node projection) throws IOException {
+            if (projection != null && projection.isWhole()) {
+                projection = null;
+            }
+            switch (type) {
+                case 1: { // byte
+                    byte value = in.readByte();
+                    generator.writeNumber(value);
+                    capture(node, value);
+                    return;
+                }
+                case 2: { // short
+                    short value = in.readShort();
+                    generator.writeNumber(value);
+                    capture(node, value);
+                    return;
+                }
+                case 3: { // int
+                    int value = in.readInt();
+                    generator.writeNumber(value);
+                    capture(node, value);
+                    return;
+                }
+                case 4: { // long
+                    long value = in.readLong();
+                    generator.writeNumber(value);
+                    capture(node, value);
+                    return;
+                }
+                case 5: { // float
+                    float value = in.readFloat();
+                    generator.writeNumber(value);
+                    capture(node, value);
+                    return;
+                }
+                case 6: { // double
+                    double value = in.readDouble();
+                    generator.writeNumber(value);
+                    capture(node, value);
+                    return;
+                }
+                case 7: { // byte array
+                    int length = readArrayLength(in);
+                    if (arrayEncoding != ArrayEncoding.LIST) {
+                        writeEncodedArray(length);
+                        return;
+                    }
+                    generator.writeStartArray();
+                    for (int i = 0; i < length; i++) {
+                        generator.writeNumber((int) in.readByte());
+                    }
+                    generator.writeEndArray();
+                    return;
+                }
+                case 8: { // string
+                    String value = readString(in);
+                    generator.writeString(value);
+                    capture(node, value);
+                    return;
+                }
+                case 9: { // list
+                    int elemType = in.readUnsignedByte();
+                    int length = in.readInt();
+                    generator.writeStartArray();
+                    for (int i = 0; i < length; i++) {
+                        if (projection == null) {
+                            writePayload(elemType, null, null);
+                            continue;
+                        }
+                        NbtProjection.Node selected = projection.element(i);
+                        if (selected != null && selected.accepts(elemType)) {
+                            writePayload(elemType, null, selected);
+                        } else {
+                            skipPayload(in, elemType);
+                        }
+                    }
+                    generator.writeEndArray();
+                    return;
+                }
+                case 10: // compound
+                    writeCompound(node, projection);
+                    return;
+                case 11: { // int array
+                    int length = readArrayLength(in);
+                    if (arrayEncoding != ArrayEncoding.LIST) {
+                        writeEncodedArray((long) length * 4);
+                        return;
+                    }
+                    generator.writeStartArray();
+                    for (int i = 0; i < length; i++) {
+                        generator.writeNumber(in.readInt());
+                    }
+                    generator.writeEndArray();
+                    return;
+                }
+                case 12: { // long array
+                    int length = readArrayLength(in);
+                    if (arrayEncoding != ArrayEncoding.LIST) {
+                        writeEncodedArray((long) length * 8);
+                        return;
+                    }
+                    generator.writeStartArray();
+                    for (int i = 0; i < length; i++) {
+                        generator.writeNumber(in.readLong());
+                    }
+                    generator.writeEndArray();
+                    return;
+                }
+                default:
+                    throw new IOException("Unsupported NBT tag type: " + type);
+            }
+        }
+
+        // the file already holds array elements as big-endian bytes, so they are encoded without conversion
+        private void writeEncodedArray(long byteLength) throws IOException {
+            if (byteLength > Integer.MAX_VALUE - 8) {
+                throw new IOException("NBT array too large: " + byteLength + " bytes");
+            }
+            // read through a fixed buffer; the text only grows with bytes actually present in the file
+            byte[] buffer = new byte[(int) Math.min(byteLength, ARRAY_CHUNK)];
+            StringBuilder text = new StringBuilder(buffer.length * 2);
+            Base64.Encoder encoder = Base64.getEncoder();
+            long remaining = byteLength;
+            while (remaining > 0) {
+                int n = (int) Math.min(remaining, buffer.length);
+                in.readFully(buffer, 0, n);
+                remaining -= n;
+                if (arrayEncoding == ArrayEncoding.BASE64) {
+                    text.append(encoder.encodeToString(n == buffer.length ? buffer : Arrays.copyOf(buffer, n)));
+                } else {
+                    for (int i = 0; i < n; i++) {
+                        text.append(HEX_DIGITS[(buffer[i] >> 4) & 0xF]).append(HEX_DIGITS[buffer[i] & 0xF]);
+                    }
+                }
+            }
+            generator.writeString(text.toString());
+        }
+
+        private void capture(PathNode node, Object value) {
+            if (node != null && node.path != null) {
+                captured.put(node.path, value);
+            }
+        }
+    }
+
+    private static void skipPayload(DataInputStream in, int type) throws IOException {
+        switch (type) {
+            case 7: // byte array
+                skipBytes(in, in.readInt());
+                return;
+            case 8: // string
+                skipBytes(in, in.readUnsignedShort());
+                return;
+            case 9: { // list
+                int elemType = in.readUnsignedByte();
+                int length = in.readInt();
+                int width = fixedWidth(elemType);
+                if (width > 0) {
+                    skipBytes(in, (long) length * width);
+                } else {
+                    for (int i = 0; i < length; i++) {
+                        skipPayload(in, elemType);
+                    }
+                }
+                return;
+            }
+            case 10: // compound
+                while (true) {
+                    int childType = in.readUnsignedByte();
+                    if (childType == 0) {
+                        return;
+                    }
+                    skipBytes(in, in.readUnsignedShort());
+                    skipPayload(in, childType);
+                }
+            case 11: // int array
+                skipBytes(in, (long) in.readInt() * 4);
+                return;
+            case 12: // long array
+                skipBytes(in, (long) in.readInt() * 8);
+                return;
+            default:
+                int width = fixedWidth(type);
+                if (width <= 0) {
+                    throw new IOException("Unsupported NBT tag type: " + type);
+                }
+                skipBytes(in, width);
+        }
+    }
+
+    /**
+     * @return payload size of a fixed-width tag type, or 0 for variable-length types
+     */
+    private static int fixedWidth(int type) {
+        switch (type) {
+            case 1: // byte
+                return 1;
+            case 2: // short
+                return 2;
+            case 3: // int
+            case 5: // float
+                return 4;
+            case 4: // long
+            case 6: // double
+                return 8;
+            default:
+                return 0;
+        }
+    }
+
+    private static void skipBytes(DataInputStream in, long count) throws IOException {
+        if (count < 0) {
+            throw new IOException("Negative NBT length: " + count);
+        }
+        while (count > 0) {
+            int skipped = in.skipBytes((int) Math.min(count, Integer.MAX_VALUE));
+            if (skipped <= 0) {
+                // skipBytes may give up before the end of a compressed stream; force progress or hit EOF
+                in.readByte();
+                skipped = 1;
+            }
+            count -= skipped;
+        }
+    }
+
+    private static int readArrayLength(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Negative NBT array length: " + length);
+        }
+        return length;
+    }
+
+    // doubles up to the declared length
+    private static int grownCapacity(int current, int length) {
+        return (int) Math.min(length, Math.max(ARRAY_CHUNK, (long) current * 2));
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int len = in.readUnsignedShort();
+        byte[] bytes = new byte[len];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static Map<String, Object> readCompoundPayload(DataInputStream in) throws IOException {
+        Map<String, Object> map = new HashMap<>();
+        while (true) {
+            int type;
+            try {
+                type = in.readUnsignedByte();
+            } catch (EOFException eof) {
+                // Unexpected EOF
+                throw eof;
+            }
+            if (type == 0) { // TAG_End
+                break;
+            }
+            String name = readString(in);
+            Object value = readPayloadByType(in, type);
+            map.put(name, value);
+        }
+        return map;
+    }
+
+    private static Object readPayloadByType(DataInputStream in, int type) throws IOException {
+        switch (type) {
+            case 1: // byte
+                return in.readByte();
+            case 2: // short
+                return in.readShort();
+            case 3: // int
+                return in.readInt();
+            case 4: // long
+                return in.readLong();
+            case 5: // float
+                return in.readFloat();
+            case 6: // double
+                return in.readDouble();
+            case 7: { // byte array
+                int length = readArrayLength(in);
+                byte[] arr = new byte[Math.min(length, ARRAY_CHUNK)];
+                int filled = 0;
+                while (filled < length) {
+                    if (filled == arr.length) {
+                        arr = Arrays.copyOf(arr, grownCapacity(arr.length, length));
+                    }
+                    in.readFully(arr, filled, arr.length - filled);
+                    filled = arr.length;
+                }
+                return arr;
+            }
+            case 8: // string
+                return readString(in);
+            case 9: { // list
+                int elemType = in.readUnsignedByte();
+                int length = in.readInt();
+                List<Object> list = new ArrayList<>(Math.max(0, Math.min(length, 1 << 20)));
+                for (int i = 0; i < length; i++) {
+                    list.add(readPayloadByType(in, elemType));
+                }
+                return list;
+            }
+            case 10: // compound
+                return readCompoundPayload(in);
+            case 11: { // int array
+                int length = readArrayLength(in);
+                int[] arr = new int[Math.min(length, ARRAY_CHUNK)];
+                for (int i = 0; i < length; i++) {
+                    if (i == arr.length) arr = Arrays.copyOf(arr, grownCapacity(arr.length, length));
+                    arr[i] = in.readInt();
+                }
+                return arr;
+            }
+            case 12: { // long array
+                int length = readArrayLength(in);
+                long[] arr = new long[Math.min(length, ARRAY_CHUNK)];
+                for (int i = 0; i < length; i++) {
+                    if (i == arr.length) arr = Arrays.copyOf(arr, grownCapacity(arr.length, length));
+                    arr[i] = in.readLong();
+                }
+                return arr;
+            }
+            default:
+                throw new IOException("Unsupported NBT tag type: " + type);
+        }
+    }
+}
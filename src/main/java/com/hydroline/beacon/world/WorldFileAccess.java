@@ -3,17 +3,70 @@ package com.hydroline.beacon.world;
 import org.bukkit.World;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
 
 public class WorldFileAccess {
 
+    /**
+     * Kinds of world files the scanners track; each has its own dirty set in watch mode.
+     */
+    public enum Category {
+        ADVANCEMENTS,
+        STATS,
+        PLAYERDATA,
+        MTR_LOGS
+    }
+
+    // Directories that never hold MTR logs but hold most of a world's files: chunk data at any depth,
+    // and the per-player and saved-data folders at the world root.
+    private static final Set<String> PRUNED_DIRECTORY_NAMES =
+            new HashSet<>(Arrays.asList("region", "entities", "poi"));
+    private static final Set<String> PRUNED_ROOT_DIRECTORY_NAMES =
+            new HashSet<>(Arrays.asList("playerdata", "data", "advancements", "stats", "datapacks"));
+    private static final long MTR_LOG_REDISCOVERY_MILLIS = 10L * 60_000L;
+
     private final List<World> worldsSnapshot;
+    private final Map<String, MtrLogDirectories> mtrLogDirectories = new ConcurrentHashMap<>();
+
+    // Watch mode: directory watch keys map to a category, events land in that category's dirty set.
+    // A category whose events were lost (overflow, failed registration) is flagged for a full rescan.
+    private volatile WatchService watchService;
+    private Thread watchThread;
+    private Logger watchLogger;
+    private final Map<WatchKey, Category> watchedCategories = new ConcurrentHashMap<>();
+    private final Map<WatchKey, Path> watchedDirectories = new ConcurrentHashMap<>();
+    private final Set<Path> registeredDirectories = ConcurrentHashMap.newKeySet();
+    private final Map<Category, Set<File>> dirtyFiles = new EnumMap<>(Category.class);
+    private final Map<Category, AtomicBoolean> rescanRequired = new EnumMap<>(Category.class);
 
     public WorldFileAccess(List<World> worldsSnapshot) {
         this.worldsSnapshot = new ArrayList<>(worldsSnapshot);
+        for (Category category : Category.values()) {
+            dirtyFiles.put(category, ConcurrentHashMap.newKeySet());
+            rescanRequired.put(category, new AtomicBoolean(true));
+        }
     }
 
     public List<World> getWorlds() {
@@ -32,13 +85,214 @@ public class WorldFileAccess {
         return world.getWorldFolder();
     }
 
+    public File getPlayerdataDirectory(World world) {
+        return new File(world.getWorldFolder(), "playerdata");
+    }
+
+    /**
+     * List the MTR log CSVs of a world. The {@code logs} directories are found by a pruned walk of the world
+     * folder; later calls only list the directories found last time, and the walk is repeated every
+     * {@link #MTR_LOG_REDISCOVERY_MILLIS} to pick up new dimensions.
+     */
     public List<File> findMtrLogFiles(World world) {
-        List<File> result = new ArrayList<>();
         File worldFolder = world.getWorldFolder();
-        collectCsvLogsUnder(worldFolder, worldFolder, result);
+        String key = worldFolder.getAbsolutePath();
+        long now = System.currentTimeMillis();
+        MtrLogDirectories known = mtrLogDirectories.get(key);
+        if (known == null || now - known.discoveredAt >= MTR_LOG_REDISCOVERY_MILLIS) {
+            known = new MtrLogDirectories(discoverMtrLogDirectories(worldFolder.toPath()), now);
+            mtrLogDirectories.put(key, known);
+        }
+        if (watchService != null) {
+            // no-op for directories already watched; logs directories created later arrive with the next rediscovery
+            for (File dir : known.directories) {
+                register(dir, Category.MTR_LOGS);
+            }
+        }
+
+        List<File> result = new ArrayList<>();
+        for (File dir : known.directories) {
+            File[] files = dir.listFiles();
+            if (files == null) {
+                continue;
+            }
+            for (File file : files) {
+                if (file.getName().toLowerCase().endsWith(".csv") && file.isFile()) {
+                    result.add(file);
+                }
+            }
+        }
         return result;
     }
 
+    /**
+     * @return the world whose folder contains {@code file}, or null
+     */
+    public World findWorldOf(File file) {
+        Path path = file.toPath().toAbsolutePath();
+        for (World world : worldsSnapshot) {
+            if (path.startsWith(world.getWorldFolder().toPath().toAbsolutePath())) {
+                return world;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Start watching the advancements, stats, playerdata and known MTR logs directories of every world.
+     * Until {@link #stopWatching()} the scanners can ask for {@link #drainDirtyFiles(Category)} instead of listing.
+     */
+    public synchronized void startWatching(Logger logger) throws IOException {
+        if (watchService != null) {
+            return;
+        }
+        this.watchLogger = logger;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        for (World world : worldsSnapshot) {
+            register(getAdvancementsDirectory(world), Category.ADVANCEMENTS);
+            register(getStatsDirectory(world), Category.STATS);
+            register(getPlayerdataDirectory(world), Category.PLAYERDATA);
+            findMtrLogFiles(world);
+        }
+        watchThread = new Thread(this::runWatchLoop, "Beacon-File-Watch");
+        watchThread.setDaemon(true);
+        watchThread.start();
+    }
+
+    public synchronized void stopWatching() {
+        WatchService service = watchService;
+        watchService = null;
+        if (service != null) {
+            try {
+                service.close();
+            } catch (IOException ignored) {
+            }
+        }
+        if (watchThread != null) {
+            watchThread.interrupt();
+            watchThread = null;
+        }
+        watchedCategories.clear();
+        watchedDirectories.clear();
+        registeredDirectories.clear();
+        for (Category category : Category.values()) {
+            dirtyFiles.get(category).clear();
+            rescanRequired.get(category).set(true);
+        }
+    }
+
+    public boolean isWatching() {
+        return watchService != null;
+    }
+
+    /**
+     * Take the files of one category touched since the last call. Returns null when not watching or when
+     * events may have been lost, in which case the caller must fall back to a full listing.
+     */
+    public Set<File> drainDirtyFiles(Category category) {
+        if (watchService == null) {
+            return null;
+        }
+        Set<File> dirty = dirtyFiles.get(category);
+        if (rescanRequired.get(category).getAndSet(false)) {
+            dirty.clear();
+            registerDirectories(category);
+            return null;
+        }
+        Set<File> drained = new HashSet<>();
+        for (File file : dirty) {
+            if (dirty.remove(file)) {
+                drained.add(file);
+            }
+        }
+        return drained;
+    }
+
+    // directories that did not exist yet when the watch started are registered on the next full scan
+    private void registerDirectories(Category category) {
+        for (World world : worldsSnapshot) {
+            switch (category) {
+                case ADVANCEMENTS:
+                    register(getAdvancementsDirectory(world), category);
+                    break;
+                case STATS:
+                    register(getStatsDirectory(world), category);
+                    break;
+                case PLAYERDATA:
+                    register(getPlayerdataDirectory(world), category);
+                    break;
+                default:
+                    // MTR logs directories are registered by findMtrLogFiles
+                    break;
+            }
+        }
+    }
+
+    private void register(File dir, Category category) {
+        WatchService service = watchService;
+        if (service == null || !dir.isDirectory()) {
+            return;
+        }
+        Path path = dir.toPath().toAbsolutePath();
+        if (!registeredDirectories.add(path)) {
+            return;
+        }
+        try {
+            WatchKey key = path.register(service,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+            watchedCategories.put(key, category);
+            watchedDirectories.put(key, path);
+        } catch (IOException | ClosedWatchServiceException e) {
+            registeredDirectories.remove(path);
+            rescanRequired.get(category).set(true);
+            if (watchLogger != null) {
+                watchLogger.warning("Failed to watch " + path + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void runWatchLoop() {
+        while (true) {
+            WatchService service = watchService;
+            if (service == null) {
+                return;
+            }
+            WatchKey key;
+            try {
+                key = service.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Category category = watchedCategories.get(key);
+            Path dir = watchedDirectories.get(key);
+            if (category != null && dir != null) {
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        rescanRequired.get(category).set(true);
+                        continue;
+                    }
+                    Object context = event.context();
+                    if (context instanceof Path) {
+                        dirtyFiles.get(category).add(dir.resolve((Path) context).toFile());
+                    }
+                }
+            }
+            if (!key.reset()) {
+                // directory deleted or no longer accessible; a full scan re-registers it if it comes back
+                watchedCategories.remove(key);
+                if (dir != null) {
+                    watchedDirectories.remove(key);
+                    registeredDirectories.remove(dir);
+                }
+                if (category != null) {
+                    rescanRequired.get(category).set(true);
+                }
+            }
+        }
+    }
+
     public String deriveDimensionContext(World world, File csvFile) {
         Path worldPath = world.getWorldFolder().toPath();
         Path parentPath = csvFile.getParentFile().toPath();
@@ -47,22 +301,53 @@ public class WorldFileAccess {
         return context;
     }
 
-    private void collectCsvLogsUnder(File worldFolder, File current, List<File> result) {
-        if (current == null || !current.exists()) {
-            return;
+    private List<File> discoverMtrLogDirectories(Path worldFolder) {
+        List<File> result = new ArrayList<>();
+        if (!Files.isDirectory(worldFolder)) {
+            return result;
         }
-        File[] files = current.listFiles();
-        if (files == null) {
-            return;
+        try {
+            Files.walkFileTree(worldFolder, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    Path name = dir.getFileName();
+                    if (name == null || dir.equals(worldFolder)) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    String lower = name.toString().toLowerCase();
+                    if (PRUNED_DIRECTORY_NAMES.contains(lower)
+                            || (PRUNED_ROOT_DIRECTORY_NAMES.contains(lower) && worldFolder.equals(dir.getParent()))) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    if ("logs".equals(lower)) {
+                        result.add(dir.toFile());
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException ignored) {
+            // the visitor swallows per-entry failures; keep whatever was found
         }
-        for (File file : files) {
-            if (file.isDirectory()) {
-                collectCsvLogsUnder(worldFolder, file, result);
-            } else if (file.isFile()
-                    && file.getName().toLowerCase().endsWith(".csv")
-                    && "logs".equalsIgnoreCase(file.getParentFile().getName())) {
-                result.add(file);
-            }
+        return result;
+    }
+
+    private static final class MtrLogDirectories {
+        private final List<File> directories;
+        private final long discoveredAt;
+
+        private MtrLogDirectories(List<File> directories, long discoveredAt) {
+            this.directories = directories;
+            this.discoveredAt = discoveredAt;
         }
     }
 }
@@ -205,6 +205,20 @@ async function main() {
       );
       await writeJson(outDir, `player_sessions_page1.json`, sessionsPage1);
 
+      if (sessionsPage1 && sessionsPage1.next_cursor) {
+        const sessionsPage2 = await emitWithAck(
+          socket,
+          "get_player_sessions",
+          {
+            key,
+            pageSize: 50,
+            cursor: sessionsPage1.next_cursor,
+          },
+          "get_player_sessions(cursor)"
+        );
+        await writeJson(outDir, `player_sessions_page2.json`, sessionsPage2);
+      }
+
       const identitiesPage1 = await emitWithAck(
         socket,
         "list_player_identities",